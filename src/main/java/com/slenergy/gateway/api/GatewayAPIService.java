@@ -2,13 +2,21 @@ package com.slenergy.gateway.api;
 
 import com.slenergy.gateway.api.server.DeviceMessage;
 import com.slenergy.gateway.api.server.GWapi;
+import com.slenergy.gateway.api.server.LiveTelemetry;
+import com.slenergy.gateway.api.server.ResponseCache;
+import com.slenergy.gateway.api.server.WorkerPool;
 import com.slenergy.gateway.api.server.can.CanServer;
 import com.slenergy.gateway.api.server.device.Dehumidifier;
 import com.slenergy.gateway.api.server.device.EmsBox;
 import com.slenergy.gateway.api.server.device.IBox;
 import com.slenergy.gateway.api.server.device.LiquidCooling;
+import com.slenergy.gateway.api.server.ingest.DeadbandFilter;
+import com.slenergy.gateway.api.server.ingest.InfluxWriter;
+import com.slenergy.gateway.api.server.ingest.IngestLimiter;
+import com.slenergy.gateway.api.server.ingest.LatestValueStore;
 import com.slenergy.gateway.api.server.schema.config.PathConfig;
 import com.slenergy.gateway.api.server.util.Pair;
+import com.slenergy.gateway.api.server.util.RegisterLayout;
 import com.slenergy.gateway.api.server.wifi.WifiConfig;
 import com.slenergy.gateway.api.server.wifi.WifiConnectorServer;
 import com.slenergy.gateway.connector.modbus.scanner.*;
@@ -770,14 +778,32 @@ public class GatewayAPIService {
 
 
 
+        // 初始化实时数据写入器, 所有实例共享
+        InfluxWriter writer = InfluxWriter.getInstance();
+        // 数据写入实时数据库之后才使历史数据查询的缓存失效, 之前查询不到新数据
+        writer.onWritten(ResponseCache.getInstance()::invalidate);
+        writer.initialize(config.getJsonObject("database"), config.getJsonObject("writer"));
+        Runtime.getRuntime().addShutdownHook(new Thread(writer::close));
+        JsonObject ingest = config.getJsonObject("ingest", new JsonObject());
+        IngestLimiter.getInstance().initialize(ingest);
+        DeadbandFilter.getInstance().initialize(ingest.getJsonObject("deadband"));
+        LatestValueStore.getInstance().initialize(ingest.getJsonObject("latest"));
+        ResponseCache.getInstance().initialize(config.getJsonObject("query", new JsonObject()).getJsonObject("cache"));
+        RegisterLayout.load(config.getJsonObject("query", new JsonObject()).getString("registerLayouts"));
+
         // 初始化后端
         final Vertx vertx = Vertx.vertx();
+        // 执行阻塞操作的线程池, 所有实例共享
+        WorkerPool.initialize(vertx, config.getJsonObject("pools"));
+        LiveTelemetry.getInstance().initialize(vertx, config.getJsonObject("subscribe"));
         int instances = config.getInteger("instances");
         LOGGER.info("部署{}个实例", instances);
         // 发布standard
         vertx.deployVerticle(GWapi::new, new DeploymentOptions()
                 .setConfig(new JsonObject()
                         .put("database", config.getJsonObject("database"))
+                        .put("ingest", config.getJsonObject("ingest"))
+                        .put("query", config.getJsonObject("query"))
                         .put("address", config.getJsonObject("address")))
                 .setInstances(instances), ar -> {
             if (ar.failed()) {
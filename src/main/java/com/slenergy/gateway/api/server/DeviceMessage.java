@@ -15,7 +15,6 @@ import java.util.*;
  * 记录连接的设备信息
  */
 public final class DeviceMessage {
-    @Setter
     @Getter
     private EmsBox emsBox;
     @Setter
@@ -40,6 +39,17 @@ public final class DeviceMessage {
         devices = new HashMap<>();
     }
 
+    /**
+     * 数据采集器序列号变化时, 之前编码好的数据帧头部失效
+     * @param emsBox 数据采集器
+     */
+    public void setEmsBox(EmsBox emsBox) {
+        String before = this.emsBox == null ? null : this.emsBox.getSerialNumber();
+        this.emsBox = emsBox;
+        if (!Objects.equals(before, emsBox == null ? null : emsBox.getSerialNumber()))
+            FrameHeaders.getInstance().invalidate();
+    }
+
     public void addDehumidifier(String sn, Dehumidifier dhf) {
         dehumidifiers.put(sn, dhf);
         devices.put(sn, dhf);
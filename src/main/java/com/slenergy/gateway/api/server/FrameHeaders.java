@@ -0,0 +1,155 @@
+package com.slenergy.gateway.api.server;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import java.nio.charset.StandardCharsets;
+import java.util.HexFormat;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * class FrameHeaders description
+ * 上传云端的数据帧头部缓存, 保存编码好的数据采集器序列号以及每个(设备类型, 设备序列号)的序列号前缀和设备类型代码
+ * 头部只和数据采集器序列号有关, 只在{@link DeviceMessage#setEmsBox}修改数据采集器序列号时失效
+ *
+ * <p>
+ * <pre>{@code
+ * FrameHeaders.Header header = FrameHeaders.getInstance().header("bms", serialNumber);
+ * encoder.begin(header, LocalDateTime.now());
+ * String collector = FrameHeaders.getInstance().collectorHex();
+ * }</pre>
+ * </p>
+ *
+ * @author Eric Li
+ * @version 1.0
+ *
+ * @since 2026-10-18
+ * @since 1.0
+ */
+public final class FrameHeaders {
+
+    private final static Logger LOGGER = LogManager.getLogger(FrameHeaders.class);
+    private static FrameHeaders INSTANCE = null;
+    /**
+     * 序列号的字节数, 不足时左侧补0
+     */
+    public final static int SERIAL_NUMBER_LENGTH = 30;
+
+    /**
+     * 当前数据采集器序列号对应的缓存, 失效时为null, 下一次使用时重新建立
+     */
+    private volatile Snapshot snapshot;
+
+    /**
+     * 帧头部
+     * @param prefix 数据采集器序列号 + 设备序列号, 各30字节
+     * @param prefixHex prefix的十六进制字符串
+     * @param typeCode 设备类型代码, 未知的设备类型为-1
+     */
+    public record Header(byte[] prefix, String prefixHex, int typeCode) {}
+
+    private record Key(String deviceType, String serialNumber) {}
+
+    private record Snapshot(String serialNumber, byte[] collector, String collectorHex, Map<Key, Header> headers) {}
+
+    public static synchronized FrameHeaders getInstance() {
+        if (INSTANCE == null) {
+            INSTANCE = new FrameHeaders();
+        }
+
+        return INSTANCE;
+    }
+
+    private FrameHeaders() {}
+
+    /**
+     * 数据采集器序列号变化, 之前编码好的头部不再使用
+     * 和建立缓存互斥, 正在用旧序列号建立的缓存会在建立完成后被清除
+     */
+    public synchronized void invalidate() {
+        snapshot = null;
+    }
+
+    /**
+     * @return 编码好的数据采集器序列号的十六进制字符串
+     */
+    public String collectorHex() {
+        return snapshot().collectorHex();
+    }
+
+    /**
+     * @param deviceType 设备类型
+     * @param serialNumber 设备序列号, IO模块, 北斗和空调使用数据采集器序列号加前缀
+     * @return 帧头部
+     */
+    public Header header(String deviceType, String serialNumber) {
+        Snapshot current = snapshot();
+        return current.headers().computeIfAbsent(new Key(deviceType, serialNumber), key -> {
+            String deviceSN = switch (deviceType) {
+                case "IOmodule" -> "IO" + current.serialNumber();
+                case "beidou" -> "BD" + current.serialNumber();
+                case "AirConditioner" -> "Air" + current.serialNumber();
+                default -> serialNumber;
+            };
+            byte[] device = encode(deviceSN);
+            byte[] prefix = new byte[current.collector().length + device.length];
+            System.arraycopy(current.collector(), 0, prefix, 0, current.collector().length);
+            System.arraycopy(device, 0, prefix, current.collector().length, device.length);
+            return new Header(prefix, HexFormat.of().formatHex(prefix), typeCode(deviceType));
+        });
+    }
+
+    private Snapshot snapshot() {
+        Snapshot current = snapshot;
+        return current != null ? current : build();
+    }
+
+    private synchronized Snapshot build() {
+        Snapshot current = snapshot;
+        if (current != null)
+            return current;
+
+        String serialNumber = DeviceMessage.getInstance().getEmsBox().getSerialNumber();
+        byte[] collector = encode(serialNumber);
+        current = new Snapshot(serialNumber, collector, HexFormat.of().formatHex(collector), new ConcurrentHashMap<>());
+        LOGGER.debug("建立数据采集器{}的帧头部缓存", serialNumber);
+        snapshot = current;
+        return current;
+    }
+
+    /**
+     * @param serialNumber 序列号
+     * @return 左侧补0到30字节的序列号, 超过30字节时不截断
+     */
+    private static byte[] encode(String serialNumber) {
+        byte[] bytes = serialNumber.getBytes(StandardCharsets.UTF_8);
+        if (bytes.length >= SERIAL_NUMBER_LENGTH)
+            return bytes;
+
+        byte[] ret = new byte[SERIAL_NUMBER_LENGTH];
+        System.arraycopy(bytes, 0, ret, SERIAL_NUMBER_LENGTH - bytes.length, bytes.length);
+        return ret;
+    }
+
+    /**
+     * @param deviceType 设备类型
+     * @return 数据帧中的设备类型代码, 未知的设备类型返回-1
+     */
+    private static int typeCode(String deviceType) {
+        return switch (deviceType) {
+            case "dehumidifier" -> 0xfb01;
+            case "bms", "bms_monomer" -> 0xfc01;
+            case "liquidCooling" -> 0xfa01;
+            case "batteryCell" -> 0xf901;
+            case "dosimeter" -> 0xfe01;
+            case "electricityMeter" -> 0xfd01;
+            case "IOmodule" -> 0xf601;
+            case "pcs" -> 0xff03;
+            case "AirConditioner" -> 0xf501;
+            case "beidou" -> 0xf401;
+            default -> -1;
+        };
+    }
+
+}
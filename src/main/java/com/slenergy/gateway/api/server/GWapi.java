@@ -1,26 +1,40 @@
 package com.slenergy.gateway.api.server;
 
 import com.slenergy.gateway.api.server.can.CanServer;
+import com.slenergy.gateway.api.server.device.AttributeTable;
 import com.slenergy.gateway.api.server.device.CommandDevice;
-import com.slenergy.gateway.api.server.device.EmsBox;
 import com.slenergy.gateway.api.server.device.IBox;
 import com.slenergy.gateway.api.server.device.RealTimeDevice;
-import com.slenergy.gateway.api.server.device.chargingPile.ChargingPile;
-import com.slenergy.gateway.api.server.device.heatPump.HeatPump;
-import com.slenergy.gateway.api.server.device.inverter.Inverter;
+import com.slenergy.gateway.api.server.ingest.*;
 import com.slenergy.gateway.api.server.schema.*;
+import com.slenergy.gateway.api.server.util.BmsCellFrame;
 import com.slenergy.gateway.api.server.util.CRC16;
 import com.slenergy.gateway.api.server.util.HexUtils;
+import com.slenergy.gateway.api.server.util.RegisterLayout;
+import com.slenergy.gateway.api.server.util.SegmentEncoder;
 import com.slenergy.gateway.api.server.wifi.WifiConfig;
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.dataformat.cbor.CBORFactory;
+import com.influxdb.client.InfluxDBClient;
+import com.influxdb.client.InfluxDBClientFactory;
 import com.slenergy.gateway.database.influxdb.InfluxConnection;
-import com.slenergy.gateway.database.influxdb.Piece;
 import io.vertx.core.AbstractVerticle;
+import io.vertx.core.AsyncResult;
+import io.vertx.core.Future;
+import io.vertx.core.Promise;
+import io.vertx.core.buffer.Buffer;
+import io.vertx.core.http.HttpHeaders;
 import io.vertx.core.http.HttpServer;
 import io.vertx.core.http.HttpServerOptions;
+import io.vertx.core.http.HttpServerRequest;
+import io.vertx.core.http.HttpServerResponse;
+import io.vertx.core.json.Json;
 import io.vertx.core.json.JsonArray;
 import io.vertx.core.json.JsonObject;
 import io.vertx.core.shareddata.LocalMap;
 import io.vertx.ext.web.Router;
+import io.vertx.ext.web.RoutingContext;
 import io.vertx.ext.web.handler.BodyHandler;
 import lombok.extern.java.Log;
 import org.apache.logging.log4j.LogManager;
@@ -39,11 +53,12 @@ import java.time.format.DateTimeFormatter;
 import java.time.temporal.ChronoUnit;
 import java.util.*;
 import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executor;
 import java.util.concurrent.Executors;
 import java.util.concurrent.ScheduledExecutorService;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicReference;
-import java.util.regex.Pattern;
 import java.util.stream.Stream;
 import java.util.zip.ZipEntry;
 import java.util.zip.ZipOutputStream;
@@ -66,15 +81,6 @@ public class GWapi extends AbstractVerticle {
 
     // 定义除湿机需要拆分的寄存器读取10
     private static final Set<String> DEHUMIDIFIER_ADDRESSES = Set.of("7594", "7595", "7596", "7597");
-    private final static String QUERY_ALL_BY_DEVICE = """
-              from(bucket: "%s")
-          |> range(start: %s, stop: %s)
-          |> filter(fn: (r) => r._measurement == "%s" and r.deviceName == "%s" and r.deviceSN == "%s")
-          |> pivot(rowKey: ["_time"], columnKey: ["_field"], valueColumn: "_value")
-          |> sort(columns: ["_time"], desc: true)
-          |> group(columns: ["deviceName", "deviceSN", "tag"])
-          """;
-
     private final static String QUERY_ALL_BY_EMS_DEVICE = """
             from(bucket: "%s")
         |> range(start: %s, stop: now())
@@ -105,10 +111,108 @@ public class GWapi extends AbstractVerticle {
         |> limit(n: 1)
         """;
 
+    /**
+     * 一次查询多个设备类型的最新数据, 每个时间范围一个分支, 分支之间union
+     * 每个字段取最后一个值之后按设备分组再pivot, 每个(设备类型, subTag, tag)得到一行
+     */
+    private final static String QUERY_LAST_BRANCH = """
+            %s = from(bucket: "%s")
+        |> range(start: %s, stop: now())
+        |> filter(fn: (r) => contains(value: r._measurement, set: [%s])%s)
+        |> last()
+        |> group(columns: ["_measurement", "subTag", "deviceName", "deviceSN", "tag"])
+        |> pivot(rowKey: ["_measurement"], columnKey: ["_field"], valueColumn: "_value")
+        """;
+
+    /**
+     * /data/realtime/read/ems/device需要的数据
+     */
+    private final static List<InfoQuery> EMS_DEVICE_QUERIES = List.of(
+            //除湿机
+            new InfoQuery("dehumidifier.runtimeInfo", "dehumidifier", "runtimeInformation", "-30s"),
+            new InfoQuery("dehumidifier.configInfo", "dehumidifier", "configurationInformation", "-30s"),
+            //bms
+            new InfoQuery("bms.runtimeInfo", "bms", "runtimeInformation", "-30s"),
+            new InfoQuery("bms.configInfo", "bms", "configurationInformation", "-30s"),
+            //bms单体信息
+            new InfoQuery("bms_monomer.runtimeInfo", "bms_monomer", "runtimeInformation", "-500ms"),
+            //dido信息
+            new InfoQuery("ioModule.runtimeInfo", "IOmodule", "runtimeInformation", "-30s"),
+            new InfoQuery("ioModule.configInfo", "IOmodule", "configurationInformation", "-30s"),
+            //液冷机信息
+            new InfoQuery("liquidCooling.runtimeInfo", "liquidCooling", "runtimeInformation", "-30s"),
+            new InfoQuery("liquidCooling.configInfo", "liquidCooling", "configurationInformation", "-30s"),
+            //pcs信息
+            new InfoQuery("pcs.runtimeInfo", "pcs", "runtimeInformation", "-3m"),
+            new InfoQuery("pcs.configInfo", "pcs", "configurationInformation", "-3m"),
+            //北斗
+            new InfoQuery("beidou.runtimeInfo", "beidou", "runtimeInformation", "-30s"),
+            new InfoQuery("beidou.configInfo", "beidou", "configurationInformation", "-30s"),
+            //空调
+            new InfoQuery("air.runtimeInfo", "AirConditioner", "runtimeInformation", "-30s"),
+            new InfoQuery("air.configInfo", "AirConditioner", "configurationInformation", "-30s"));
+
+    /**
+     * /device/ems/getConfig需要的数据
+     */
+    private final static List<InfoQuery> EMS_CONFIG_QUERIES = List.of(
+            //除湿机
+            new InfoQuery("dehumidifier.configInfo", "dehumidifier", "configurationInformation", "-30s"),
+            //bms
+            new InfoQuery("bms.configInfo", "bms", "configurationInformation", "-30s"),
+            //dido信息
+            new InfoQuery("ioModule.configInfo", "IOmodule", "configurationInformation", "-30s"),
+            //液冷机信息
+            new InfoQuery("liquidCooling.configInfo", "liquidCooling", "configurationInformation", "-30s"),
+            //pcs信息
+            new InfoQuery("pcs.configInfo", "pcs", "configurationInformation", "-3m"),
+            //空调信息
+            new InfoQuery("air.configInfo", "AirConditioner", "configurationInformation", "-30s"),
+            //北斗信息
+            new InfoQuery("beidou.configInfo", "beidou", "configurationInformation", "-30s"));
+
+    /**
+     * {@link #convertDataIntoSegment}在数据不完整时的返回值
+     */
+    private final static String INCOMPLETE = "Error";
+    /**
+     * 编码好的数据区段, 设备类型.数据类型 -> 数据区段, 所有实例共享, 合并时间相近的重复查询
+     */
+    private final static Map<String, Memo> INFO_MEMO = new ConcurrentHashMap<>();
+    /**
+     * 数据区段编码器, 每个线程一个, 编码时不需要加锁
+     */
+    private final static ThreadLocal<SegmentEncoder> SEGMENT_ENCODER = ThreadLocal.withInitial(SegmentEncoder::new);
+    private final static ThreadLocal<BmsCellFrame> BMS_CELL_FRAME = ThreadLocal.withInitial(BmsCellFrame::new);
+    /**
+     * 序列化好的设备数据, 设备序列号 -> 数据, 所有实例共享, 设备版本号变化时重新序列化
+     */
+    private final static Map<String, Fragment> DEVICE_FRAGMENTS = new ConcurrentHashMap<>();
+
+    /**
+     * CBOR解析器工厂, 线程安全, 支持CBOR的stringref字段名字典
+     */
+    private final static CBORFactory CBOR_FACTORY = new CBORFactory();
+    private final static JsonFactory JSON_FACTORY = new JsonFactory();
+    /**
+     * 批量写入时写入缓冲区已满的重试间隔(毫秒)
+     */
+    private final static long BULK_RETRY_DELAY = 100;
+
     private InfluxConnection connection;
 
+    /**
+     * 流式回复历史数据使用回调查询, 逐行读取查询结果
+     */
+    private InfluxDBClient influxClient;
+
     private DeviceMessage dm = DeviceMessage.getInstance();
 
+    /**
+     * 充电桩属性的SQLite写入交给sqlite线程池
+     */
+    private final Executor sqlite = WorkerPool.get(WorkerPool.SQLITE).asExecutor();
+
     @Override
     public void start() throws Exception {
         JsonObject config = config();
@@ -117,14 +221,10 @@ public class GWapi extends AbstractVerticle {
         // 初始化数据库对象
         String bucket = db.getString("bucket");
         connection = new InfluxConnection(db.getString("host"), db.getString("token"), db.getString("org"), bucket);
-        while (!connection.ping()) {
+        influxClient = InfluxDBClientFactory.create(db.getString("host"), db.getString("token").toCharArray(), db.getString("org"), bucket);
+        // 实时数据库不可用时写入的数据由InfluxWriter缓存到磁盘, 不再阻塞启动
+        if (!connection.ping())
             LOGGER.error("无法ping通实时数据库，请检查连接是否正确");
-            try {
-                Thread.sleep(10000);
-            } catch (InterruptedException e) {
-                LOGGER.warn("线程{}无法睡眠, {}", getClass().getName(), e.getMessage());
-            }
-        }
 
         final HttpServer server = this.vertx.createHttpServer(new HttpServerOptions()
                 .setLogActivity(true));
@@ -134,7 +234,23 @@ public class GWapi extends AbstractVerticle {
         sharedMap.put("upgrate", "00");
         // 创建路由对象
         final Router router = Router.router(this.vertx);
+        // 写入请求在接收请求体之前就开始计数, 超过上限时直接拒绝
+        IngestLimiter limiter = IngestLimiter.getInstance();
+        router.post("/data/realtime/write*").handler(ctx -> {
+            if (!limiter.enter()) {
+                reject(ctx, 503, ResponseEnum.BUSY, limiter.retryAfter());
+                return;
+            }
+            ctx.addEndHandler(v -> limiter.exit());
+            ctx.next();
+        });
+        // 批量写入需要边接收边解析, 必须在BodyHandler之前注册
+        JsonObject ingest = config.getJsonObject("ingest", new JsonObject());
+        int bulkChunkSize = ingest.getInteger("bulkChunkSize", 1000);
+        int maxRecordSize = ingest.getInteger("maxRecordSize", 1024 * 1024);
+        router.post("/data/realtime/write/bulk").consumes("application/x-ndjson").handler(ctx -> bulkWrite(ctx, bulkChunkSize, maxRecordSize));
         router.route().handler(BodyHandler.create());
+        QueryOptions queryOptions = QueryOptions.of(config.getJsonObject("query"));
 
         //记录进度
 //        AtomicReference<String> process = new AtomicReference<>("00");
@@ -142,42 +258,124 @@ public class GWapi extends AbstractVerticle {
         router.post("/data/realtime/write").consumes("application/json").handler(ctx -> {
             RealTimeData data = ctx.body().asPojo(RealTimeData.class);
 //            LOGGER.info("写入的实时数据: {}", data);
-            saveDevice(data);
-            List<Piece> pieces = new ArrayList<>();
-            for (TimeSeriesData timeseries : data.timeSeries()) {
-                Map<String, String> tags = new HashMap<>(Map.of("deviceSN", data.serialNumber(), "deviceName", data.deviceName()));
-                if (timeseries.tag() != null)
-                    tags.put("tag", timeseries.tag());
-                if (timeseries.subTag() != null)
-                    tags.put("subTag", timeseries.subTag());
-
-                pieces.add(new Piece(
-                        data.deviceType(),
-                        data.timestamp(),
-                        transferTimeUnit(data.timeUnit()),
-                        tags,
-                        new HashMap<>(Map.of(timeseries.field(), timeseries.value()))
-                ));
+            PointEncoder encoder = new PointEncoder();
+            DeadbandFilter.Filter deadband = DeadbandFilter.getInstance().wrap(encoder);
+            StagedListener staged = stageUpdates();
+            IngestLimiter.Gate gate = limiter.gate(IngestListener.compose(staged, deadband));
+            gate.accept(data);
+            if (gate.retryAfter() > 0) {
+                deadband.rollback();
+                staged.rollback();
+                reject(ctx, 429, ResponseEnum.TOO_MANY_REQUESTS, gate.retryAfter());
+                return;
             }
-            connection.insert(pieces, transferTimeUnit(data.timeUnit()));
-            ctx.json(new ResponseResult<String>(ResponseEnum.SUCCESS.getCode(), ResponseEnum.SUCCESS.getMessage(), null));
+            acceptPoints(ctx, encoder.takePoints(), deadband, staged);
+        });
+
+        // 二进制格式(CBOR)的实时数据, 直接流式解析, 不经过jackson-databind
+        router.post("/data/realtime/write").consumes("application/cbor").handler(ctx -> {
+            PointEncoder encoder = new PointEncoder();
+            DeadbandFilter.Filter deadband = DeadbandFilter.getInstance().wrap(encoder);
+            StagedListener staged = stageUpdates();
+            IngestLimiter.Gate gate = limiter.gate(IngestListener.compose(staged, deadband));
+            try (JsonParser parser = CBOR_FACTORY.createParser(ctx.body().buffer().getBytes())) {
+                parser.nextToken();
+                RealTimeDataDecoder.decode(parser, gate);
+            } catch (IOException e) {
+                LOGGER.warn("无法解析CBOR格式的实时数据: {}", e.getMessage());
+                // 和批量写入一样丢弃解析到一半的上报
+                gate.abort();
+                deadband.rollback();
+                staged.rollback();
+                ctx.fail(400, e);
+                return;
+            }
+            if (gate.retryAfter() > 0) {
+                deadband.rollback();
+                staged.rollback();
+                reject(ctx, 429, ResponseEnum.TOO_MANY_REQUESTS, gate.retryAfter());
+                return;
+            }
+            acceptPoints(ctx, encoder.takePoints(), deadband, staged);
         });
 
         router.post("/data/realtime/read").consumes("application/json").handler(ctx -> {
             DeviceRealTimeData data = ctx.body().asPojo(DeviceRealTimeData.class);
             String stop = data.stop() == null ? "now()" : data.stop();
-            List<Map<String, Object>> results = connection.query(String.format(QUERY_ALL_BY_DEVICE, db.getString("bucket"), data.start(), stop, data.measurement(), data.deviceName(), data.deviceSN()));
-            LOGGER.info("回复的数据：{}", results);
-            ctx.json(new ResponseResult<>(ResponseEnum.SUCCESS.getCode(), ResponseEnum.SUCCESS.getMessage(), results));
+            HistoryQuery history;
+            HistoryQuery.Cursor cursor;
+            try {
+                history = new HistoryQuery(connection, db.getString("bucket"), data, queryOptions.points());
+                cursor = HistoryQuery.Cursor.parse(data.cursor());
+                if (data.limit() != null && data.limit() <= 0)
+                    throw new IllegalArgumentException("limit必须大于0");
+            } catch (IllegalArgumentException e) {
+                ctx.fail(400, e);
+                return;
+            }
+
+            // 流式回复只查询一次, 边读取边写入, 不经过缓存
+            if (Boolean.parseBoolean(ctx.request().getParam("stream"))) {
+                history.stream(influxClient.getQueryApi(), ctx.response(), cursor, queryOptions.pageSize());
+                return;
+            }
+
+            ResponseCache cache = ResponseCache.getInstance();
+            ResponseCache.Key key = new ResponseCache.Key(data.measurement(), data.deviceName(), data.deviceSN(), data.start(), stop, data.limit(), data.cursor(), history.window(), history.aggregate());
+            ResponseCache.Entry entry = cache.get(key);
+            if (entry != null) {
+                reply(ctx, entry);
+                return;
+            }
+
+            long version = cache.version(data.deviceSN());
+            WorkerPool.get(WorkerPool.INFLUX).execute(() -> {
+                        Object results;
+                        if (data.limit() == null) {
+                            List<Map<String, Object>> rows = history.all();
+                            LOGGER.info("回复{}的{}行数据, 聚合窗口: {}", data.deviceSN(), rows.size(), history.window());
+                            results = rows;
+                        } else {
+                            HistoryQuery.Page page = history.fetch(cursor, Math.min(data.limit(), queryOptions.maxLimit()));
+                            LOGGER.info("回复{}的{}行数据, 下一页: {}", data.deviceSN(), page.rows().size(), page.cursor());
+                            results = page;
+                        }
+                        return Json.encodeToBuffer(new ResponseResult<>(ResponseEnum.SUCCESS.getCode(), ResponseEnum.SUCCESS.getMessage(), results));
+                    })
+                    .onSuccess(body -> reply(ctx, cache.put(key, version, body)))
+                    .onFailure(ctx::fail);
         });
 
+        // 订阅设备的实时数据, 代替轮询/data/realtime/read/all
+        router.get("/data/realtime/subscribe").handler(LiveTelemetry.getInstance()::subscribe);
+
         router.post("/data/realtime/read/all").consumes("application/json").handler(ctx -> {
             AllDevice data = ctx.body().asPojo(AllDevice.class);
             int interval = data.interval();
-            JsonObject results = new JsonObject().put("ibox", MessageQueue.getInstance().getIBoxSerialization().put("systemTime", new SimpleDateFormat("yyyy-MM-dd HH:mm:ss").format(new Date())).put("timestamp", System.currentTimeMillis() / 1000));
-            results.put("inverters", getInverters(interval)).put("heatPumps", getHeatPumps(interval)).put("chargingPiles", getChargingPiles(interval));
-            LOGGER.info("回复数据: {}", results);
-            ctx.json(new ResponseResult<>(ResponseEnum.SUCCESS.getCode(), ResponseEnum.SUCCESS.getMessage(), results));
+            MessageQueue inc = MessageQueue.getInstance();
+            // 先给过期的设备取版本号, 再读取版本号, 之后的更新和过期在下一次增量查询中返回
+            markStale(inc.getInverters(), interval);
+            markStale(inc.getHeatPumps(), interval);
+            markStale(inc.getChargingPiles(), interval);
+            long version = RealTimeDevice.currentVersion();
+            // 客户端的版本号不是本次启动之后的版本号时(例如服务重启过)返回全部数据
+            boolean full = data.sinceVersion() == null || !RealTimeDevice.isCurrentBoot(data.sinceVersion());
+            long since = full ? -1 : data.sinceVersion();
+            JsonArray removed = full ? null : new JsonArray();
+            JsonObject ibox = inc.getIBoxSerialization().put("systemTime", new SimpleDateFormat("yyyy-MM-dd HH:mm:ss").format(new Date())).put("timestamp", System.currentTimeMillis() / 1000);
+            // 设备数据使用缓存的序列化结果直接拼接, 只重新序列化有更新的设备
+            Buffer body = Buffer.buffer()
+                    .appendString("{\"code\":" + ResponseEnum.SUCCESS.getCode() + ",\"message\":" + Json.encode(ResponseEnum.SUCCESS.getMessage()) + ",\"data\":{\"ibox\":")
+                    .appendBuffer(ibox.toBuffer())
+                    .appendString(",\"inverters\":").appendBuffer(getDevices(inc.getInverters(), interval, since, removed))
+                    .appendString(",\"heatPumps\":").appendBuffer(getDevices(inc.getHeatPumps(), interval, since, removed))
+                    .appendString(",\"chargingPiles\":").appendBuffer(getDevices(inc.getChargingPiles(), interval, since, removed))
+                    .appendString(",\"version\":" + version + ",\"full\":" + full);
+            if (removed != null)
+                body.appendString(",\"removed\":").appendBuffer(removed.toBuffer());
+            body.appendString("}}");
+            LOGGER.debug("回复数据: {}", body);
+            ctx.response().putHeader(HttpHeaders.CONTENT_TYPE, "application/json").end(body);
         });
 
         //ems读取所有设备信息
@@ -196,73 +394,16 @@ public class GWapi extends AbstractVerticle {
 //            }
 //            JsonObject bmsJson = new JsonObject().put("runtimeInfo", bmsRunTimeInformation).put("configInfo", bmsConfigInformation);
             //查询实时数据和设置数据
-            //除湿机
-            String dhRuntimeInfoData = getInfoData(db, "dehumidifier", "runtimeInformation", "-30s");
-            String dhConfigInfoData = getInfoData(db, "dehumidifier", "configurationInformation","-30s");
-            //bms
-            String bmsRuntimeInfoData = getInfoData(db, "bms", "runtimeInformation", "-30s");
-            String bmsConfigInfoData = getInfoData(db, "bms", "configurationInformation", "-30s");
-            //bms单体信息
-//            String bmsMonomerInfoData = getInfoData(db, "bms_monomer", "runtimeInformation");
-            String bmsMonomerInfoData = getbmsMonomerInfoData(db, "runtimeInformation");
-            //dido信息
-            String ioModuleRuntimeInfoData = getInfoData(db, "IOmodule", "runtimeInformation", "-30s");
-            String ioModuleConfigInfoData = getInfoData(db, "IOmodule", "configurationInformation", "-30s");
-            //液冷机信息
-            String liquidCoolingRuntimeInfoData = getInfoData(db, "liquidCooling", "runtimeInformation", "-30s");
-            String liquidCoolingConfigInfoData = getInfoData(db, "liquidCooling", "configurationInformation", "-30s");
-            //pcs信息
-            String pcsRuntimeInfoData = getInfoData(db, "pcs", "runtimeInformation", "-3m");
-            String pcsConfigInfoData = getInfoData(db, "pcs", "configurationInformation", "-3m");
-            //北斗
-            String beidouRuntimeInfoData = getInfoData(db, "beidou", "runtimeInformation", "-30s");
-            String beidouConfigInfoData = getInfoData(db, "beidou", "configurationInformation", "-30s");
-            //空调
-            String airRuntimeInfoData = getInfoData(db, "AirConditioner", "runtimeInformation", "-30s");
-            String airConfigInfoData = getInfoData(db, "AirConditioner", "configurationInformation", "-30s");
-
-            //数据采集器信息
-            EmsBox emsBox = dm.getEmsBox();
-            HexFormat hexFormat = HexFormat.of();
-            String collectorSNHexStr = hexFormat.formatHex(emsBox.getSerialNumber().getBytes());
-            String collectorSNHexStrFormat = padLeft(collectorSNHexStr, 30);
-            int emsBoxNum = dm.getEmsBoxNum();
-            String eboxNumFormat = HexUtils.hexBytesToHexString(HexUtils.intToHexBytes(emsBoxNum));
-            String emsBoxDicList = dm.getEmsBoxDicList(null);
-            StringBuilder builder = new StringBuilder();
-            StringBuilder eboxStr = builder.append(collectorSNHexStrFormat).append(eboxNumFormat).append("00").append(emsBoxDicList);
-
-
-            JsonObject totalJson = new JsonObject();
-            JsonObject dhJson = new JsonObject().put("runtimeInfo", dhRuntimeInfoData).put("configInfo", dhConfigInfoData);
-            JsonObject bmsJson = new JsonObject().put("runtimeInfo", bmsRuntimeInfoData).put("configInfo", bmsConfigInfoData);
-            JsonObject bmsMonomerJson = new JsonObject().put("runtimeInfo", bmsMonomerInfoData);
-            JsonObject ioModuleJson = new JsonObject().put("runtimeInfo", ioModuleRuntimeInfoData).put("configInfo", ioModuleConfigInfoData);
-            JsonObject liquidCoolingJson = new JsonObject().put("runtimeInfo", liquidCoolingRuntimeInfoData).put("configInfo", liquidCoolingConfigInfoData);
-            JsonObject pcsJson = new JsonObject().put("runtimeInfo", pcsRuntimeInfoData).put("configInfo", pcsConfigInfoData);
-            JsonObject bdJson = new JsonObject().put("runtimeInfo", beidouRuntimeInfoData).put("configInfo", beidouConfigInfoData);
-            JsonObject airJson = new JsonObject().put("runtimeInfo", airRuntimeInfoData).put("configInfo", airConfigInfoData);
-
-            JsonObject ebox = new JsonObject().put("runtimeInfo", eboxStr.toString());
-
-
-
-            //查询实时数据和设置数据
-//            String dhRuntimeInfoData = getInfoData(db, dehumidifier.getDeviceType(), dehumidifier.getDeviceName(), dehumidifier.getSerialNumber(), "runtimeInformation");
-//            String dhConfigInfoData = getInfoData(db, dehumidifier.getDeviceType(), dehumidifier.getDeviceName(), dehumidifier.getSerialNumber(), "configurationInformation");
-
-            totalJson.put("dehumidifier", dhJson)
-                    .put("bms", bmsJson)
-                    .put("bms_monomer", bmsMonomerJson)
-                    .put("ioModule", ioModuleJson)
-                    .put("liquidCooling", liquidCoolingJson)
-                    .put("pcs", pcsJson)
-                    .put("beidou", bdJson)
-                    .put("air", airJson)
-                    .put("ebox", ebox);
-//            totalJson.put("bms", bmsJson);
-            LOGGER.info("回复数据:{}", totalJson);
-            ctx.json(new ResponseResult<>(ResponseEnum.SUCCESS.getCode(), ResponseEnum.SUCCESS.getMessage(), totalJson));
+            queryInfo(db, EMS_DEVICE_QUERIES, queryOptions).onSuccess(result -> {
+                JsonObject totalJson = new JsonObject();
+                for (String device : List.of("dehumidifier", "bms", "bms_monomer", "ioModule", "liquidCooling", "pcs", "beidou", "air"))
+                    totalJson.put(device, result.device(device));
+                //数据采集器信息
+                totalJson.put("ebox", new JsonObject().put("runtimeInfo", emsBoxInfo()));
+//                totalJson.put("bms", bmsJson);
+                LOGGER.info("回复数据:{}", totalJson);
+                ctx.json(new ResponseResult<>(ResponseEnum.SUCCESS.getCode(), ResponseEnum.SUCCESS.getMessage(), totalJson));
+            }).onFailure(ctx::fail);
         });
 
         //ems完全透传功能
@@ -287,16 +428,17 @@ public class GWapi extends AbstractVerticle {
 //            透传
             CommandDevice device = dm.getCommandDevice(deviceSn);
 
-            String result = null;
             String message = HexUtils.hexBytesToHexString(transParentDataBytes);
             LOGGER.info("从云平台接收到的指令: {}", message);
             //etu
-            try {
-                result = CanServer.getInstance().sendMessageAndReceive(message);
-                LOGGER.info("接收到下位机的返回: {}", result);
-            } catch (Exception e) {
-                LOGGER.info("发送失败：{}", e.getMessage());
-            }
+            WorkerPool.get(WorkerPool.CAN).execute(() -> CanServer.getInstance().sendMessageAndReceive(message)).onComplete(ar -> {
+                String result = null;
+                if (ar.succeeded()) {
+                    result = ar.result();
+                    LOGGER.info("接收到下位机的返回: {}", result);
+                } else {
+                    LOGGER.info("发送失败：{}", ar.cause().getMessage());
+                }
 //            if (device == null) {
 //                String functionCode = message.substring(2, 4);   // 功能码（应为10）
 //                if (functionCode.equals("03")) {
@@ -381,15 +523,16 @@ public class GWapi extends AbstractVerticle {
 //                        LOGGER.warn("无法给设备下发指令: {}", e.getMessage());
 //                    }
 //            }
-            String functionCode = message.substring(2, 4);
-            if (result != null) {
-                if ("10".equals(functionCode) || "06".equals(functionCode)) {
-                    result = "w" + result;
-                } else {
-                    result = "r" + result;
+                String functionCode = message.substring(2, 4);
+                if (result != null) {
+                    if ("10".equals(functionCode) || "06".equals(functionCode)) {
+                        result = "w" + result;
+                    } else {
+                        result = "r" + result;
+                    }
                 }
-            }
-            ctx.json(new ResponseResult<String>(ResponseEnum.SUCCESS.getCode(), ResponseEnum.SUCCESS.getMessage(), result));
+                ctx.json(new ResponseResult<String>(ResponseEnum.SUCCESS.getCode(), ResponseEnum.SUCCESS.getMessage(), result));
+            });
         });
         
         //修改box的属性
@@ -421,14 +564,11 @@ public class GWapi extends AbstractVerticle {
             boolean isSucess = true;
             //80 固件升级功能
             Set<Integer> keySet = settingMap.keySet();
+            Future<String> update = Future.succeededFuture();
             if (keySet.contains(80)) {
                 String updateCommand = settingMap.get(80);
-                try {
-                    LOGGER.info("发送出去的升级地址: {}", updateCommand);
-                    CanServer.getInstance().sendMessageAndReceive(updateCommand);
-                } catch (Exception e) {
-                    LOGGER.warn("无法给设备下发指令: {}", e.getMessage());
-                }
+                LOGGER.info("发送出去的升级地址: {}", updateCommand);
+                update = WorkerPool.get(WorkerPool.CAN).execute(() -> CanServer.getInstance().sendMessageAndReceive(updateCommand));
 //                });
 //                ctx.json(new ResponseResult<String>(ResponseEnum.SUCCESS.getCode(), ResponseEnum.SUCCESS.getMessage(), "ok"));
             }
@@ -439,9 +579,12 @@ public class GWapi extends AbstractVerticle {
                 //修改配置
 //                setTimezone(timeZone);
                 //todo 暂时都改成ok
-                ctx.json(new ResponseResult<String>(ResponseEnum.SUCCESS.getCode(), ResponseEnum.SUCCESS.getMessage(), "ok"));
             }
-            ctx.json(new ResponseResult<String>(ResponseEnum.SUCCESS.getCode(), ResponseEnum.SUCCESS.getMessage(), "ok"));
+            update.onComplete(ar -> {
+                if (ar.failed())
+                    LOGGER.warn("无法给设备下发指令: {}", ar.cause().getMessage());
+                ctx.json(new ResponseResult<String>(ResponseEnum.SUCCESS.getCode(), ResponseEnum.SUCCESS.getMessage(), "ok"));
+            });
         });
 
         //查找box的属性
@@ -504,15 +647,12 @@ public class GWapi extends AbstractVerticle {
 
         //测试路由
         router.post("/test").consumes("application/text").handler(ctx ->{
-            try {
-                LOGGER.info("云平台给设备透传：{}", "0103759400041fe9");
+            LOGGER.info("云平台给设备透传：{}", "0103759400041fe9");
 //                    result = device.sendEmsCommand(HexUtils.hexBytesToHexString(message.getBytes()));
-                CommandDevice device = dm.getCommandDevice("1");
-                String s = device.sendEmsCommand("0103759400041fe9");
-                LOGGER.info("收到{}的返回：{}", device.getSerialNumber(), s);
-            } catch (Exception e) {
-                LOGGER.warn("无法给设备下发指令: {}", e.getMessage());
-            }
+            CommandDevice device = dm.getCommandDevice("1");
+            WorkerPool.get(WorkerPool.CAN).execute(() -> device.sendEmsCommand("0103759400041fe9"))
+                    .onSuccess(s -> LOGGER.info("收到{}的返回：{}", device.getSerialNumber(), s))
+                    .onFailure(e -> LOGGER.warn("无法给设备下发指令: {}", e.getMessage()));
         });
 
         //接收来自Can设备上报的进度
@@ -535,12 +675,8 @@ public class GWapi extends AbstractVerticle {
 
 //        上报固件升级的进度
         router.post("/device/update/getProcess").consumes("application/octet-stream").handler(ctx -> {
-            HexFormat hexFormat = HexFormat.of();
-            EmsBox emsBox = dm.getEmsBox();
             //采集器序列号
-            String collectorSNHexStr = hexFormat.formatHex(emsBox.getSerialNumber().getBytes());
-//            String collectorSNHexStr = hexFormat.formatHex("EMS123467".getBytes());
-            String collectorSNHexStrFormat = padLeft(collectorSNHexStr, 30);
+            String collectorSNHexStrFormat = FrameHeaders.getInstance().collectorHex();
             StringBuilder builder = new StringBuilder();
             //下载进度
             String downloadProcess = sharedMap.get("download");
@@ -588,61 +724,28 @@ public class GWapi extends AbstractVerticle {
         router.post("/device/ems/getConfig").consumes("application/json").handler(ctx -> {
             LOGGER.info("上报设置类数据");
             //查询设置数据
-            //除湿机
-            String dhConfigInfoData = getInfoData(db, "dehumidifier", "configurationInformation","-30s");
-            //bms
-            String bmsConfigInfoData = getInfoData(db, "bms", "configurationInformation", "-30s");
-            //dido信息
-            String ioModuleConfigInfoData = getInfoData(db, "IOmodule", "configurationInformation", "-30s");
-            //液冷机信息
-            String liquidCoolingConfigInfoData = getInfoData(db, "liquidCooling", "configurationInformation", "-30s");
-            //pcs信息
-            String pcsConfigInfoData = getInfoData(db, "pcs", "configurationInformation", "-3m");
-            //空调信息
-            String airConfigInfoData = getInfoData(db, "AirConditioner", "configurationInformation", "-30s");
-            //北斗信息
-            String beidouConfigInfoData = getInfoData(db, "beidou", "configurationInformation", "-30s");
-            //数据采集器信息
-            EmsBox emsBox = dm.getEmsBox();
-            HexFormat hexFormat = HexFormat.of();
-            String collectorSNHexStr = hexFormat.formatHex(emsBox.getSerialNumber().getBytes());
-            String collectorSNHexStrFormat = padLeft(collectorSNHexStr, 30);
-            int emsBoxNum = dm.getEmsBoxNum();
-            String eboxNumFormat = HexUtils.hexBytesToHexString(HexUtils.intToHexBytes(emsBoxNum));
-            String emsBoxDicList = dm.getEmsBoxDicList(null);
-            StringBuilder builder = new StringBuilder();
-            StringBuilder eboxStr = builder.append(collectorSNHexStrFormat).append(eboxNumFormat).append("00").append(emsBoxDicList);
-
-
-            JsonObject totalJson = new JsonObject();
-            JsonObject dhJson = new JsonObject().put("runtimeInfo", null).put("configInfo", dhConfigInfoData);
-            JsonObject bmsJson = new JsonObject().put("runtimeInfo", null).put("configInfo", bmsConfigInfoData);
-            JsonObject bmsMonomerJson = new JsonObject().put("runtimeInfo", null);
-            JsonObject ioModuleJson = new JsonObject().put("runtimeInfo", null).put("configInfo", ioModuleConfigInfoData);
-            JsonObject liquidCoolingJson = new JsonObject().put("runtimeInfo", null).put("configInfo", liquidCoolingConfigInfoData);
-            JsonObject pcsJson = new JsonObject().put("runtimeInfo", null).put("configInfo", pcsConfigInfoData);
-            JsonObject airJson = new JsonObject().put("runtimeInfo", null).put("configInfo", airConfigInfoData);
-            JsonObject beidouJson = new JsonObject().put("runtimeInfo", null).put("configInfo", beidouConfigInfoData);
-            JsonObject ebox = new JsonObject().put("runtimeInfo", eboxStr.toString());
-
-            //查询实时数据和设置数据
-            //            String dhRuntimeInfoData = getInfoData(db, dehumidifier.getDeviceType(), dehumidifier.getDeviceName(), dehumidifier.getSerialNumber(), "runtimeInformation");
-            //            String dhConfigInfoData = getInfoData(db, dehumidifier.getDeviceType(), dehumidifier.getDeviceName(), dehumidifier.getSerialNumber(), "configurationInformation");
-
-            totalJson.put("dehumidifier", dhJson)
-                    .put("bms", bmsJson)
-                    .put("bms_monomer", bmsMonomerJson)
-                    .put("ioModule", ioModuleJson)
-                    .put("liquidCooling", liquidCoolingJson)
-                    .put("pcs", pcsJson)
-                    .put("air", airJson)
-                    .put("beidou", beidouJson)
-                    .put("ebox", ebox);
-            //            totalJson.put("bms", bmsJson);
-            LOGGER.info("回复数据:{}", totalJson);
-            ctx.json(new ResponseResult<>(ResponseEnum.SUCCESS.getCode(), ResponseEnum.SUCCESS.getMessage(), totalJson));
+            queryInfo(db, EMS_CONFIG_QUERIES, queryOptions).onSuccess(result -> {
+                JsonObject totalJson = new JsonObject();
+                for (String device : List.of("dehumidifier", "bms", "bms_monomer", "ioModule", "liquidCooling", "pcs", "air", "beidou")) {
+                    JsonObject json = new JsonObject().put("runtimeInfo", null);
+                    totalJson.put(device, json.mergeIn(result.device(device)));
+                }
+                //数据采集器信息
+                totalJson.put("ebox", new JsonObject().put("runtimeInfo", emsBoxInfo()));
+                LOGGER.info("回复数据:{}", totalJson);
+                ctx.json(new ResponseResult<>(ResponseEnum.SUCCESS.getCode(), ResponseEnum.SUCCESS.getMessage(), totalJson));
+            }).onFailure(ctx::fail);
         });
 
+        router.get("/metrics").handler(ctx -> ctx.json(new ResponseResult<>(ResponseEnum.SUCCESS.getCode(), ResponseEnum.SUCCESS.getMessage(), new JsonObject()
+                .put("writer", InfluxWriter.getInstance().metrics())
+                .put("ingest", IngestLimiter.getInstance().metrics())
+                .put("deadband", DeadbandFilter.getInstance().metrics())
+                .put("latest", LatestValueStore.getInstance().metrics())
+                .put("readCache", ResponseCache.getInstance().metrics())
+                .put("subscribe", LiveTelemetry.getInstance().metrics())
+                .put("pools", WorkerPool.metrics())
+                .put("unknownFields", AttributeTable.unknownFields()))));
         router.get("/").handler(ctx -> ctx.json(new ResponseResult<String>(ResponseEnum.SUCCESS.getCode(), ResponseEnum.SUCCESS.getMessage(), null)));
 
         server.requestHandler(router);
@@ -653,7 +756,21 @@ public class GWapi extends AbstractVerticle {
 
 //    @NotNull
     private String getInfoData(JsonObject db, String deviceType, String infoType, String time) {
-        List<Map<String, Object>> info = connection.query(String.format(QUERY_ALL_BY_EMS_DEVICE, db.getString("bucket"), time, deviceType, infoType));
+        // 优先使用上报时保存的最新值, 启动以来没有收到过上报时才查询实时数据库
+        List<Map<String, Object>> info = LatestValueStore.getInstance().query(deviceType, infoType, time);
+        if (info == null)
+            info = connection.query(String.format(QUERY_ALL_BY_EMS_DEVICE, db.getString("bucket"), time, deviceType, infoType));
+        return encodeInfoData(info, deviceType, infoType);
+    }
+
+    /**
+     * 把一个设备类型的最新数据编码成数据区段
+     * @param info 查询结果, 使用第一行
+     * @param deviceType 设备类型
+     * @param infoType 数据类型, 即subTag
+     * @return 数据区段, 没有数据时返回null, 数据不完整时返回{@link #INCOMPLETE}
+     */
+    private String encodeInfoData(List<Map<String, Object>> info, String deviceType, String infoType) {
         if (info.size() ==  0) {
             LOGGER.info("查询不到{}的{}信息", deviceType, infoType);
             return null;
@@ -661,166 +778,646 @@ public class GWapi extends AbstractVerticle {
         String serialNumber = (String) info.get(0).get("deviceSN");
         Map<String, Map<String, Object>> runtimeMap = splitMap(info.get(0), FILTER_EXPRESSION);
 
-        String result = null;
+        // 数据不完整时返回INCOMPLETE, 由调用者在定时器中重新查询, 不占用线程池等待
+        return convertDataIntoSegment(runtimeMap.get("numericKeys"), serialNumber, deviceType);
+    }
 
-        // 设置最大重试次数，避免无限循环
-        int maxRetryCount = 2;
-        int retryCount = 0;
+    private String getbmsMonomerInfoData(JsonObject db, String infoType) {
+        List<Map<String, Object>> info = LatestValueStore.getInstance().query("bms_monomer", "-500ms");
+        if (info == null)
+            info = connection.query(String.format(QUERY_BMS_MONOMER, db.getString("bucket"), "bms_monomer"));
+        return encodeBmsMonomerInfoData(info, infoType);
+    }
 
-        result = convertDataIntoSegment(runtimeMap.get("numericKeys"), serialNumber, deviceType);
-        while (result == null && retryCount < maxRetryCount) {
-            result = convertDataIntoSegment(runtimeMap.get("numericKeys"), serialNumber, deviceType);
+    private String encodeBmsMonomerInfoData(List<Map<String, Object>> info, String infoType) {
+        if (info.size() ==  0) {
+            LOGGER.info("查询不到bms_monomer的{}信息", infoType);
+            return null;
+        }
+        String serialNumber = (String) info.get(0).get("deviceSN");
+        return joinBmsMonomerData(info, serialNumber);
+    }
 
-            if ("Error".equals(result)) {
-                retryCount++;
-                LOGGER.warn("第{}次重试，查询数据仍然返回null", retryCount);
-                // 延迟100ms
-                try {
-                    Thread.sleep(500);
-                } catch (InterruptedException e) {
-                    Thread.currentThread().interrupt();  // 恢复中断状态
-                    LOGGER.error("线程中断", e);
+    /**
+     * 查询多个设备类型的最新数据并编码成数据区段
+     * @param db 数据库配置
+     * @param queries 需要的数据
+     * @param options 查询配置
+     * @return 查询结果
+     */
+    private Future<FanOutResult> queryInfo(JsonObject db, List<InfoQuery> queries, QueryOptions options) {
+        return new InfoRequest(db, options).start(queries);
+    }
+
+    private String getInfoData(JsonObject db, InfoQuery query) {
+        return query.monomer() ? getbmsMonomerInfoData(db, query.infoType()) : getInfoData(db, query.deviceType(), query.infoType(), query.range());
+    }
+
+    /**
+     * 用一次查询获取所有设备类型的最新数据, 有最新值的设备类型不查询, 查询结果按(设备类型, subTag)拆分后分别编码
+     * @param db 数据库配置
+     * @param queries 需要的数据
+     * @return 查询名称 -> 数据区段
+     */
+    private Map<String, String> getInfoData(JsonObject db, List<InfoQuery> queries) {
+        LatestValueStore store = LatestValueStore.getInstance();
+        Map<InfoQuery, List<Map<String, Object>>> infos = new HashMap<>();
+        // 时间范围 -> 需要查询的数据
+        Map<String, List<InfoQuery>> missing = new LinkedHashMap<>();
+        for (InfoQuery query : queries) {
+            List<Map<String, Object>> info = store.query(query.deviceType(), query.subTag(), query.range());
+            if (info == null)
+                missing.computeIfAbsent(query.range(), k -> new ArrayList<>()).add(query);
+            else
+                infos.put(query, info);
+        }
+
+        if (!missing.isEmpty()) {
+            List<Map<String, Object>> rows = connection.query(lastValueFlux(db.getString("bucket"), missing));
+            missing.values().forEach(list -> list.forEach(query -> infos.put(query, new ArrayList<>())));
+            for (Map<String, Object> row : rows) {
+                for (List<InfoQuery> list : missing.values()) {
+                    for (InfoQuery query : list) {
+                        if (query.deviceType().equals(row.get("_measurement")) && (query.subTag() == null || query.subTag().equals(row.get("subTag"))))
+                            infos.get(query).add(row);
+                    }
                 }
             }
         }
 
-        // 如果最大重试次数达到，返回null
-        if ("Error".equals(result)) {
-            LOGGER.error("最大重试次数达到，仍未获取到有效数据");
-            return null;
+        Map<String, String> ret = new LinkedHashMap<>();
+        for (InfoQuery query : queries) {
+            List<Map<String, Object>> info = infos.get(query);
+            ret.put(query.name(), query.monomer() ? encodeBmsMonomerInfoData(info, query.infoType()) : encodeInfoData(info, query.deviceType(), query.infoType()));
+        }
+        return ret;
+    }
+
+    /**
+     * @param bucket 数据库
+     * @param queries 时间范围 -> 需要查询的数据
+     * @return 合并后的flux查询语句
+     */
+    private static String lastValueFlux(String bucket, Map<String, List<InfoQuery>> queries) {
+        StringBuilder sb = new StringBuilder();
+        List<String> branches = new ArrayList<>();
+        for (Map.Entry<String, List<InfoQuery>> entry : queries.entrySet()) {
+            Set<String> measurements = new TreeSet<>();
+            Set<String> subTags = new TreeSet<>();
+            boolean all = false;
+            for (InfoQuery query : entry.getValue()) {
+                measurements.add(query.deviceType());
+                if (query.subTag() == null)
+                    all = true;
+                else
+                    subTags.add(query.subTag());
+            }
+
+            String branch = "t" + branches.size();
+            branches.add(branch);
+            sb.append(String.format(QUERY_LAST_BRANCH, branch, bucket, entry.getKey(), fluxSet(measurements),
+                    all ? "" : " and contains(value: r.subTag, set: [" + fluxSet(subTags) + "])"));
         }
 
-        return result;
+        // union至少需要两个表
+        sb.append(branches.size() == 1 ? branches.get(0) : "union(tables: [" + String.join(", ", branches) + "])");
+        return sb.toString();
     }
 
-    private String getbmsMonomerInfoData(JsonObject db, String infoType) {
-        List<Map<String, Object>> info = connection.query(String.format(QUERY_BMS_MONOMER, db.getString("bucket"), "bms_monomer"));
-        if (info.size() ==  0) {
-            LOGGER.info("查询不到bms_monomer的{}信息", infoType);
-            return null;
+    private static String fluxSet(Set<String> values) {
+        StringJoiner joiner = new StringJoiner(", ");
+        for (String value : values)
+            joiner.add("\"" + value + "\"");
+        return joiner.toString();
+    }
+
+    /**
+     * ems聚合查询需要的一项数据
+     * @param name 名称, 格式为 设备.字段
+     * @param deviceType 设备类型, 即表名
+     * @param infoType 数据类型
+     * @param range flux格式的时间范围
+     */
+    private record InfoQuery(String name, String deviceType, String infoType, String range) {
+
+        /**
+         * bms单体信息的所有tag拼在一起, 不按subTag过滤
+         */
+        private boolean monomer() {
+            return deviceType.equals("bms_monomer");
         }
-        String serialNumber = (String) info.get(0).get("deviceSN");
-        return joinBmsMonomerData(info, serialNumber);
+
+        private String subTag() {
+            return monomer() ? null : infoType;
+        }
+
+        private String key() {
+            return deviceType + "." + infoType;
+        }
+
+    }
+
+    /**
+     * 一次ems聚合查询, 状态只在当前实例的事件循环中访问, 不需要同步
+     * 查询在实时数据库线程池中执行, 数据不完整的查询由定时器稍后重新提交, 最多等待deadline毫秒, 用已经完成的结果回复
+     */
+    private final class InfoRequest {
+
+        private final JsonObject db;
+        private final QueryOptions options;
+        private final Map<String, String> results;
+        private final Set<String> pending;
+        private final Promise<FanOutResult> promise;
+        private long timer;
+
+        private InfoRequest(JsonObject db, QueryOptions options) {
+            this.db = db;
+            this.options = options;
+            this.results = new LinkedHashMap<>();
+            this.pending = new HashSet<>();
+            this.promise = Promise.promise();
+        }
+
+        private Future<FanOutResult> start(List<InfoQuery> queries) {
+            // 只合并几乎同时到达的查询, 最多为上报间隔的一半, 否则下一次定时查询会拿到上一次的数据
+            long interval = (long) (dm.getEmsBox().getDataInterval() * 60000);
+            long window = interval > 0 ? Math.min(options.memoWindow(), interval / 2) : options.memoWindow();
+            long now = System.currentTimeMillis();
+            List<InfoQuery> misses = new ArrayList<>();
+            for (InfoQuery query : queries) {
+                Memo memo = INFO_MEMO.get(query.key());
+                if (memo != null && now - memo.created() < window) {
+                    results.put(query.name(), memo.segment());
+                } else {
+                    results.put(query.name(), null);
+                    pending.add(query.name());
+                    misses.add(query);
+                }
+            }
+            if (misses.isEmpty())
+                return Future.succeededFuture(new FanOutResult(results, Set.of()));
+
+            timer = vertx.setTimer(options.deadline(), id -> {
+                LOGGER.warn("查询超过{}ms没有完成: {}", options.deadline(), pending);
+                promise.tryComplete(new FanOutResult(new LinkedHashMap<>(results), Set.copyOf(pending)));
+            });
+            submit(misses, 0);
+            return promise.future();
+        }
+
+        private void submit(List<InfoQuery> queries, int attempt) {
+            WorkerPool pool = WorkerPool.get(WorkerPool.INFLUX);
+            if (options.consolidated()) {
+                // 合并查询只有一个任务, 超时的时候所有设备都标记timeout
+                pool.execute(() -> getInfoData(db, queries)).onComplete(ar -> complete(queries, ar, attempt));
+                return;
+            }
+
+            for (InfoQuery query : queries)
+                pool.execute(() -> Collections.singletonMap(query.name(), getInfoData(db, query))).onComplete(ar -> complete(List.of(query), ar, attempt));
+        }
+
+        private void complete(List<InfoQuery> queries, AsyncResult<Map<String, String>> ar, int attempt) {
+            if (ar.failed())
+                LOGGER.warn("查询{}失败: {}", queries.stream().map(InfoQuery::name).toList(), ar.cause().getMessage());
+
+            List<InfoQuery> retry = new ArrayList<>();
+            for (InfoQuery query : queries) {
+                String result = ar.succeeded() ? ar.result().get(query.name()) : null;
+                if (INCOMPLETE.equals(result)) {
+                    if (attempt < options.retries()) {
+                        retry.add(query);
+                        continue;
+                    }
+                    LOGGER.error("{}重试{}次后数据仍然不完整", query.name(), attempt);
+                    result = null;
+                } else if (result != null) {
+                    INFO_MEMO.put(query.key(), new Memo(result, System.currentTimeMillis()));
+                }
+                results.put(query.name(), result);
+                pending.remove(query.name());
+            }
+
+            if (!retry.isEmpty()) {
+                LOGGER.warn("第{}次重试, 数据不完整: {}", attempt + 1, retry.stream().map(InfoQuery::name).toList());
+                vertx.setTimer(options.retryDelay(), id -> {
+                    if (!promise.future().isComplete())
+                        submit(retry, attempt + 1);
+                });
+            } else if (pending.isEmpty()) {
+                vertx.cancelTimer(timer);
+                promise.tryComplete(new FanOutResult(results, Set.of()));
+            }
+        }
+
+    }
+
+    /**
+     * 聚合查询配置
+     * @param consolidated true: 所有设备类型合并成一次查询, false: 每个设备类型并发查询
+     * @param deadline 最长等待时间(毫秒), 超时的设备在回复中标记timeout
+     * @param retries 数据不完整时的重试次数
+     * @param retryDelay 重试间隔(毫秒)
+     * @param memoWindow 编码结果的缓存时间(毫秒), 最多为数据采集器上报间隔的一半, 为0时不缓存
+     * @param pageSize 流式回复历史数据时每次写入回复的行数
+     * @param maxLimit 分页查询历史数据时每页的最大行数
+     * @param points 聚合历史数据时默认的目标点数
+     */
+    private record QueryOptions(boolean consolidated, long deadline, int retries, long retryDelay, long memoWindow, int pageSize, int maxLimit, int points) {
+
+        private static QueryOptions of(JsonObject options) {
+            JsonObject opts = options == null ? new JsonObject() : options;
+            return new QueryOptions("consolidated".equals(opts.getString("mode", "fanout")),
+                    opts.getLong("deadline", 3000L),
+                    opts.getInteger("retries", 2),
+                    opts.getLong("retryDelay", 500L),
+                    Math.max(0L, opts.getLong("memoWindow", 3000L)),
+                    opts.getInteger("pageSize", 1000),
+                    opts.getInteger("maxLimit", 10000),
+                    opts.getInteger("points", 1000));
+        }
+
+    }
+
+    /**
+     * 编码好的数据区段
+     * @param segment 数据区段
+     * @param created 编码时间(毫秒)
+     */
+    private record Memo(String segment, long created) {}
+
+    /**
+     * 序列化好的设备数据
+     * @param version 序列化时的设备版本号
+     * @param dynamicData 实时数据
+     * @param staticData 静态数据
+     */
+    private record Fragment(long version, Buffer dynamicData, Buffer staticData) {}
+
+    /**
+     * 并发查询的结果
+     * @param results 查询名称 -> 结果, 超时或者失败的查询结果为null
+     * @param timedOut 超时的查询名称
+     */
+    private record FanOutResult(Map<String, String> results, Set<String> timedOut) {
+
+        /**
+         * @param device 设备
+         * @return 设备的所有查询结果, 有查询超时时加上timeout: true
+         */
+        private JsonObject device(String device) {
+            String prefix = device + ".";
+            JsonObject ret = new JsonObject();
+            boolean timeout = false;
+            for (Map.Entry<String, String> entry : results.entrySet()) {
+                if (entry.getKey().startsWith(prefix)) {
+                    ret.put(entry.getKey().substring(prefix.length()), entry.getValue());
+                    timeout |= timedOut.contains(entry.getKey());
+                }
+            }
+            if (timeout)
+                ret.put("timeout", true);
+            return ret;
+        }
+
+    }
+
+    /**
+     * @return 数据采集器信息, 采集器序列号 + 设备数量 + 设备字典
+     */
+    private String emsBoxInfo() {
+        String collectorSNHexStrFormat = FrameHeaders.getInstance().collectorHex();
+        int emsBoxNum = dm.getEmsBoxNum();
+        String eboxNumFormat = HexUtils.hexBytesToHexString(HexUtils.intToHexBytes(emsBoxNum));
+        String emsBoxDicList = dm.getEmsBoxDicList(null);
+        StringBuilder builder = new StringBuilder();
+        return builder.append(collectorSNHexStrFormat).append(eboxNumFormat).append("00").append(emsBoxDicList).toString();
     }
 
     @Override
     public void stop() throws Exception {
         super.stop();
         connection.close();
+        influxClient.close();
     }
 
-    private TimeUnit transferTimeUnit(String unit) {
-        if (unit == null)
-            return TimeUnit.MILLISECONDS;
+    /**
+     * 批量写入换行分隔的实时数据(NDJSON), 每收到一行就解析一行,
+     * 数据点累积到bulkChunkSize后放入写入缓冲区, 缓冲区满时暂停读取请求, 内存占用与请求大小无关
+     * 和单条写入一样按设备限流, 某一行的设备超过频率限制时停止读取, 提交之前的行后回复429, data中为已经接收和解析失败的行数, 客户端从被拒绝的一行开始重试
+     * @param ctx 路由上下文
+     * @param chunkSize 每次放入写入缓冲区的数据点数量
+     * @param maxRecordSize 单行最大字节数
+     */
+    private void bulkWrite(RoutingContext ctx, int chunkSize, int maxRecordSize) {
+        new BulkReader(ctx, chunkSize, maxRecordSize).start();
+    }
 
-        TimeUnit ret = TimeUnit.MILLISECONDS;
-        switch (unit.toLowerCase()) {
-            case "s" -> ret = TimeUnit.SECONDS;
-            case "us" -> ret = TimeUnit.MICROSECONDS;
-            case "ns" -> ret = TimeUnit.NANOSECONDS;
+    /**
+     * 按换行符拆分请求体, 最后一行没有换行符时也会被解析
+     * RecordParser在请求结束时不会处理没有换行符的最后一行, 所以这里自己拆分
+     * 所有方法都在请求的事件循环线程中执行
+     */
+    private final class BulkReader {
+
+        private final RoutingContext ctx;
+        private final HttpServerRequest request;
+        private final int chunkSize;
+        private final int maxRecordSize;
+        private final PointEncoder encoder;
+        private final DeadbandFilter.Filter deadband;
+        private final StagedListener staged;
+        private final IngestLimiter.Gate gate;
+        /**
+         * 记录数, 数据点数, 解析失败的行数
+         */
+        private final long[] counts;
+        private Buffer pending;
+        /**
+         * 下一行的起始位置以及已经查找过换行符的位置
+         */
+        private int start;
+        private int scanned;
+        /**
+         * 正在等待写入缓冲区, 请求已经结束, 已经回复
+         */
+        private boolean waiting;
+        private boolean ended;
+        private boolean finished;
+
+        private BulkReader(RoutingContext ctx, int chunkSize, int maxRecordSize) {
+            this.ctx = ctx;
+            this.request = ctx.request();
+            this.chunkSize = chunkSize;
+            this.maxRecordSize = maxRecordSize;
+            this.encoder = new PointEncoder();
+            this.deadband = DeadbandFilter.getInstance().wrap(encoder);
+            this.staged = stageUpdates();
+            this.gate = IngestLimiter.getInstance().gate(IngestListener.compose(staged, deadband));
+            this.counts = new long[3];
+            this.pending = Buffer.buffer();
         }
-        return ret;
-    }
 
-    private void saveDevice(RealTimeData data) {
-        MessageQueue inc = MessageQueue.getInstance();
-        RealTimeDevice device = inc.getRealTimeDevice(data.serialNumber());
-        switch (data.deviceType()) {
-            case "inverter":
-                saveInverter((Inverter) device, data.timestamp(), data.timeSeries());
-                break;
-            case "heatPump":
-                saveHeatPump((HeatPump) device, data.timestamp(), data.timeSeries());
-                break;
-            case "chargingPile":
-                saveChargingPile((ChargingPile) device, data.timestamp(), data.timeSeries());
-                break;
+        private void start() {
+            request.exceptionHandler(e -> fail(e.getMessage()));
+            request.handler(chunk -> {
+                if (finished)
+                    return;
+                pending.appendBuffer(chunk);
+                drain();
+            });
+            request.endHandler(v -> {
+                ended = true;
+                drain();
+            });
         }
-    }
 
-    private void saveInverter(Inverter inverter, long timestamp, List<TimeSeriesData> data) {
-        if (inverter == null)
-            return;
+        private void drain() {
+            while (!waiting && !finished) {
+                int newline = -1;
+                for (int i = scanned; i < pending.length(); i++) {
+                    if (pending.getByte(i) == '\n') {
+                        newline = i;
+                        break;
+                    }
+                }
 
-        inverter.setTimestamp(timestamp);
-        for (TimeSeriesData record : data) {
-            if (record.tag().compareTo("inverterSetting") != 0) {
-                inverter.setAttribute(record.field(), record.value());
-            } else {
-                if (record.subTag() != null && record.subTag().startsWith("chargePeriod")) {
-                    inverter.setAttribute(record.subTag() + record.field(), record.value());
-                } else {
-                    inverter.setAttribute(record.field(), record.value());
+                if (newline < 0) {
+                    scanned = pending.length();
+                    if (scanned - start > maxRecordSize) {
+                        fail("单行超过" + maxRecordSize + "字节");
+                        return;
+                    }
+                    if (!ended) {
+                        // 丢弃已经解析的部分, 只保留不完整的一行
+                        if (start > 0) {
+                            pending = pending.getBuffer(start, pending.length());
+                            scanned -= start;
+                            start = 0;
+                        }
+                        return;
+                    }
+                    if (start < pending.length()) {
+                        // 最后一行没有换行符
+                        int end = pending.length();
+                        Buffer line = pending.slice(start, end);
+                        start = scanned = end;
+                        line(line);
+                        continue;
+                    }
+                    finish();
+                    return;
                 }
+
+                if (newline - start > maxRecordSize) {
+                    fail("单行超过" + maxRecordSize + "字节");
+                    return;
+                }
+                Buffer line = pending.slice(start, newline);
+                start = scanned = newline + 1;
+                line(line);
             }
         }
-    }
 
-    private void saveHeatPump(HeatPump heatPump, long timestamp, List<TimeSeriesData> data) {
-        if (heatPump == null)
-            return;
+        private void line(Buffer line) {
+            if (line.length() == 0 || (line.length() == 1 && line.getByte(0) == '\r'))
+                return;
+
+            try (JsonParser json = JSON_FACTORY.createParser(line.getBytes())) {
+                json.nextToken();
+                RealTimeDataDecoder.decode(json, gate);
+                if (gate.retryAfter() > 0) {
+                    rateLimited();
+                    return;
+                }
+                counts[0]++;
+            } catch (IOException e) {
+                // 解析到一半时已经回调了begin和部分字段, 丢弃这一行暂存的状态
+                gate.abort();
+                counts[2]++;
+                LOGGER.warn("第{}行实时数据无法解析: {}", counts[0] + counts[2], e.getMessage());
+            }
+
+            // 死区过滤掉所有字段时没有数据点, 暂存的上报也需要按块提交
+            if (encoder.size() >= chunkSize || staged.size() >= chunkSize) {
+                waiting = true;
+                request.pause();
+                offerChunk(ctx, encoder.takePoints(), deadband, staged, counts, () -> {
+                    waiting = false;
+                    request.resume();
+                    drain();
+                });
+            }
+        }
+
+        private void finish() {
+            finished = true;
+            offerChunk(ctx, encoder.takePoints(), deadband, staged, counts, () ->
+                    ctx.json(new ResponseResult<>(ResponseEnum.SUCCESS.getCode(), ResponseEnum.SUCCESS.getMessage(), new JsonObject()
+                            .put("records", counts[0])
+                            .put("points", counts[1])
+                            .put("errors", counts[2]))));
+        }
+
+        /**
+         * 这一行的设备超过频率限制, 这一行没有被接收, 提交之前的行后回复429
+         */
+        private void rateLimited() {
+            finished = true;
+            offerChunk(ctx, encoder.takePoints(), deadband, staged, counts, () -> {
+                ctx.response()
+                        .setStatusCode(429)
+                        .putHeader("Retry-After", String.valueOf(gate.retryAfter()));
+                ctx.json(new ResponseResult<>(ResponseEnum.TOO_MANY_REQUESTS.getCode(), ResponseEnum.TOO_MANY_REQUESTS.getMessage(), new JsonObject()
+                        .put("records", counts[0])
+                        .put("points", counts[1])
+                        .put("errors", counts[2])));
+            });
+        }
+
+        private void fail(String message) {
+            if (finished)
+                return;
+
+            finished = true;
+            deadband.rollback();
+            staged.rollback();
+            LOGGER.warn("批量写入实时数据失败: {}", message);
+            if (!ctx.response().ended())
+                ctx.fail(400, new IllegalArgumentException(message));
+        }
 
-        heatPump.setTimestamp(timestamp);
-        for (TimeSeriesData record : data)
-            heatPump.setAttribute(record.field(), record.value());
     }
 
-    private void saveChargingPile(ChargingPile chargingPile, long timestamp, List<TimeSeriesData> data) {
-        if (chargingPile == null)
+    /**
+     * 把一批数据点放入写入缓冲区, 缓冲区满时定时重试, 直到放入成功或者连接断开
+     * 放入成功后提交死区过滤暂存的值并更新设备状态, 连接断开时丢弃
+     */
+    private void offerChunk(RoutingContext ctx, List<DataPoint> points, DeadbandFilter.Filter deadband, StagedListener staged, long[] counts, Runnable next) {
+        if (ctx.response().closed()) {
+            deadband.rollback();
+            staged.rollback();
             return;
+        }
 
-        chargingPile.setTimestamp(timestamp);
-        for (TimeSeriesData record : data)
-            chargingPile.setAttribute(record.field(), record.value());
+        if (!InfluxWriter.getInstance().offer(points)) {
+            vertx.setTimer(BULK_RETRY_DELAY, id -> offerChunk(ctx, points, deadband, staged, counts, next));
+            return;
+        }
+        deadband.commit();
+        staged.commit();
+        counts[1] += points.size();
+        next.run();
     }
 
-    private JsonObject getInverters(int interval) {
-        MessageQueue inc = MessageQueue.getInstance();
-        List<Inverter> inverters = inc.getInverters();
-        JsonArray dynamicList = new JsonArray();
-        JsonArray staticList = new JsonArray();
-        for (Inverter elem : inverters) {
-            if (System.currentTimeMillis() - elem.getTimestamp() > interval * 60000L)
-                continue;
-            dynamicList.add(elem.toDynamicData());
-            staticList.add(elem.toStaticData());
+    /**
+     * 把解析好的数据点放入写入缓冲区后直接回复, 由InfluxWriter批量写入实时数据库
+     * 放入成功后才提交死区过滤暂存的值并更新设备状态, 被拒绝时丢弃, 客户端重试时同样的值会重新写入, 订阅者不会收到两次
+     */
+    private void acceptPoints(RoutingContext ctx, List<DataPoint> points, DeadbandFilter.Filter deadband, StagedListener staged) {
+        if (!InfluxWriter.getInstance().offer(points)) {
+            deadband.rollback();
+            staged.rollback();
+            LOGGER.warn("写入缓冲区已满, 无法接收{}条数据", points.size());
+            IngestLimiter limiter = IngestLimiter.getInstance();
+            limiter.rejectBufferFull();
+            reject(ctx, 503, ResponseEnum.BUSY, limiter.retryAfter());
+            return;
         }
+        deadband.commit();
+        staged.commit();
+        ctx.json(new ResponseResult<String>(ResponseEnum.SUCCESS.getCode(), ResponseEnum.SUCCESS.getMessage(), null));
+    }
 
-        return new JsonObject().put("dynamicList", dynamicList).put("staticList", staticList);
+    /**
+     * @return 设备状态和最新值缓存的更新, 数据点放入写入缓冲区之后才提交
+     */
+    private StagedListener stageUpdates() {
+        return new StagedListener(IngestListener.compose(new DeviceUpdater(sqlite, LiveTelemetry.getInstance()::publish), LatestValueStore.getInstance().listener()));
     }
 
+    /**
+     * 拒绝写入请求, 通过Retry-After告诉客户端多久之后重试
+     * @param ctx 路由上下文
+     * @param status HTTP状态码, 429或503
+     * @param resp 回复代码
+     * @param retryAfter 重试间隔(秒)
+     */
+    private void reject(RoutingContext ctx, int status, ResponseEnum resp, long retryAfter) {
+        ctx.response()
+                .setStatusCode(status)
+                .putHeader("Retry-After", String.valueOf(retryAfter));
+        ctx.json(new ResponseResult<String>(resp.getCode(), resp.getMessage(), null));
+    }
 
-    private JsonObject getHeatPumps(int interval) {
-        MessageQueue inc = MessageQueue.getInstance();
-        List<HeatPump> heatPumps = inc.getHeatPumps();
-        JsonArray dynamicList = new JsonArray();
-        JsonArray staticList = new JsonArray();
-        for (HeatPump elem : heatPumps) {
-            if (System.currentTimeMillis() - elem.getTimestamp() > interval * 60000L)
-                continue;
-            dynamicList.add(elem.toDynamicData());
-            staticList.add(elem.toStaticData());
+    /**
+     * 回复缓存的数据, 请求的If-None-Match中有这个ETag时只回复304
+     * @param ctx 路由上下文
+     * @param entry 缓存的回复
+     */
+    private void reply(RoutingContext ctx, ResponseCache.Entry entry) {
+        HttpServerResponse response = ctx.response().putHeader(HttpHeaders.ETAG, entry.etag());
+        if (ResponseCache.getInstance().notModified(entry, ctx.request().getHeader(HttpHeaders.IF_NONE_MATCH))) {
+            response.setStatusCode(304).end();
+            return;
         }
 
-        return new JsonObject().put("dynamicList", dynamicList).put("staticList", staticList);
+        response.putHeader(HttpHeaders.CONTENT_TYPE, "application/json").end(entry.body());
     }
 
-    private JsonObject getChargingPiles(int interval) {
-        MessageQueue inc = MessageQueue.getInstance();
-        List<ChargingPile> heatPumps = inc.getChargingPiles();
-        JsonArray dynamicList = new JsonArray();
-        JsonArray staticList = new JsonArray();
-        for (ChargingPile elem : heatPumps) {
-            if (System.currentTimeMillis() - elem.getTimestamp() > interval * 60000L)
+    /**
+     * 给超过interval分钟没有上报的设备取过期的版本号, 已经取过的不变
+     * @param devices 设备
+     * @param interval 分钟
+     */
+    private void markStale(List<? extends RealTimeDevice> devices, int interval) {
+        for (RealTimeDevice elem : devices) {
+            if (elem.isStale(interval))
+                elem.staleVersion(interval);
+        }
+    }
+
+    /**
+     * 拼接设备的实时数据和静态数据, 版本号没有变化的设备直接使用缓存的序列化结果
+     * @param devices 设备
+     * @param interval 只返回interval分钟内有上报的设备
+     * @param since 只返回版本号大于since的设备
+     * @param removed 不为空时加入since之后才超过interval分钟没有上报的设备序列号
+     * @return {"dynamicList": [...], "staticList": [...]}
+     */
+    private Buffer getDevices(List<? extends RealTimeDevice> devices, int interval, long since, JsonArray removed) {
+        Buffer dynamicList = Buffer.buffer().appendString("{\"dynamicList\":[");
+        Buffer staticList = Buffer.buffer().appendString(",\"staticList\":[");
+        boolean first = true;
+        for (RealTimeDevice elem : devices) {
+            if (elem.isStale(interval)) {
+                if (removed != null && elem.staleVersion(interval) > since)
+                    removed.add(elem.getSerialNumber());
+                continue;
+            }
+
+            // 先读取版本号再序列化, 序列化期间有更新时下一次请求会重新序列化
+            long version = elem.getVersion();
+            if (version <= since)
                 continue;
-            dynamicList.add(elem.toDynamicData());
-            staticList.add(elem.toStaticData());
+            Fragment fragment = DEVICE_FRAGMENTS.get(elem.getSerialNumber());
+            if (fragment == null || fragment.version() != version) {
+                fragment = new Fragment(version, elem.toDynamicData().toBuffer(), elem.toStaticData().toBuffer());
+                DEVICE_FRAGMENTS.put(elem.getSerialNumber(), fragment);
+            }
+
+            if (!first) {
+                dynamicList.appendByte((byte) ',');
+                staticList.appendByte((byte) ',');
+            }
+            dynamicList.appendBuffer(fragment.dynamicData());
+            staticList.appendBuffer(fragment.staticData());
+            first = false;
         }
 
-        return new JsonObject().put("dynamicList", dynamicList).put("staticList", staticList);
+        return dynamicList.appendByte((byte) ']').appendBuffer(staticList).appendString("]}");
     }
 
-
     public static Map<String, Map<String, Object>> splitMap(Map<String, Object> data, Set epSet) {
         Map<String, Object> numericKeyMap = new HashMap<>();
         Map<String, Object> nonNumericKeyMap = new HashMap<>();
@@ -850,211 +1447,34 @@ public class GWapi extends AbstractVerticle {
         return resultMap;
     }
 
-    public static String joinBmsMonomerData(List<Map<String, Object>> data, String serialNumber) {
-        HexFormat hexFormat = HexFormat.of();
-        DeviceMessage dm = DeviceMessage.getInstance();
-        EmsBox emsBox = dm.getEmsBox();
-        //采集器序列号
-        String collectorSNHexStr = hexFormat.formatHex(emsBox.getSerialNumber().getBytes());
-//        String collectorSNHexStr = hexFormat.formatHex("EMS123467".getBytes());
-        String collectorSNHexStrFormat = padLeft(collectorSNHexStr, 30);
-        String deviceSNHexStr = hexFormat.formatHex(serialNumber.getBytes());
-        String deviceSNHexStrFormat = padLeft(deviceSNHexStr, 30);
-        //时间戳
-        String currentTimestampHexStrFormat = getCurrentTimestampInHex();
-        // 定义顺序的参考列表
-        List<String> order = List.of("SingleCellVoltage", "SingleTemperature", "RTControlTemperature", "MonomerEquilibriumState");
-
-        // 数字字符串的正则表达式
-        Pattern numberPattern = Pattern.compile("^[0-9a-fA-F]+$");
-
-        // 创建结果容器，用于拼接最终字符串
-        StringBuilder bmsMonomerInfo = new StringBuilder();
-
-        //电芯数量
-        for (Map<String, Object> datum : data) {
-            if (datum.containsKey("tag") && "SingleCellVoltage".equals(datum.get("tag"))) {
-                // 提取纯数字键值对
-                for (Map.Entry<String, Object> entry : datum.entrySet()) {
-                    if (numberPattern.matcher(entry.getKey()).matches()) {
-                        //只加上数量
-                        bmsMonomerInfo.append(entry.getKey());
-                    }
-                }
-                break;
-            }
-        }
-
-        //压缩状态
-        bmsMonomerInfo.append("00");
-
-        // 按照顺序遍历
-        for (String key : order) {
-            for (Map<String, Object> datum : data) {
-                if (datum.containsKey("tag") && key.equals(datum.get("tag"))) {
-                    // 提取纯数字键值对
-                    for (Map.Entry<String, Object> entry : datum.entrySet()) {
-                        if (numberPattern.matcher(entry.getKey()).matches()) {
-                            bmsMonomerInfo.append(entry.getKey()).append(entry.getValue());
-                        }
-                    }
-                    break;
-                }
-            }
-        }
-
-        // 构建完整的输出
-        StringBuilder output = new StringBuilder();
-        output.append(collectorSNHexStrFormat);         //数据采集器序列号
-        output.append(deviceSNHexStrFormat);         //设备序列号
-        output.append(currentTimestampHexStrFormat);   //数据时间戳
-        output.append("f901");
-        //数据区段个数
-        output.append("00");
-        //单体信息拼接特殊
-        output.append(bmsMonomerInfo);
-
-        return output.toString();
-    }
-
-    public static synchronized String convertDataIntoSegment(Map<String, Object> data, String deviceSN, String deviceType) {
-        // todo 获取数据采集器序列号和设备序列号（假设长度为30字节）
-        HexFormat hexFormat = HexFormat.of();
-        DeviceMessage dm = DeviceMessage.getInstance();
-        EmsBox emsBox = dm.getEmsBox();
-        //采集器序列号
-        String collectorSNHexStr = hexFormat.formatHex(emsBox.getSerialNumber().getBytes());
-//        String collectorSNHexStr = hexFormat.formatHex("EMS123467".getBytes());
-
-        DeviceMessage deviceMessage = DeviceMessage.getInstance();
-        String emsSN = deviceMessage.getEmsBox().getSerialNumber();
-
-        //如果是io模块，序列号= IO+ems序列号
-        switch (deviceType) {
-            case "IOmodule" -> deviceSN = "IO" + emsSN;
-            case "beidou" -> deviceSN = "BD" + emsSN;
-            case "AirConditioner" -> deviceSN = "Air" + emsSN;
-        }
-
-        String collectorSNHexStrFormat = padLeft(collectorSNHexStr, 30);
-        String deviceSNHexStr = hexFormat.formatHex(deviceSN.getBytes());
-        String deviceSNHexStrFormat = padLeft(deviceSNHexStr, 30);
-
-        // 获取数据时间戳（长度为6字节）
-        String currentTimestampHexStrFormat = getCurrentTimestampInHex();
-//        LOGGER.info("时间戳：{}", currentTimestampHexStrFormat);
-
-        // 构建数据区段内容
-        List<String> segments = new ArrayList<>();
-        int segmentCount = 0;
-        StringBuilder bmsMonomerInfo = new StringBuilder();
-
-        TreeMap<String, Object> sortedData = new TreeMap<>(data);
-        String startAddress = null;
-        StringBuilder segmentData = new StringBuilder();
-
-        for (Map.Entry<String, Object> entry : sortedData.entrySet()) {
-            String key = entry.getKey();
-
-            if (startAddress == null) {
-                startAddress = key;
-            }
-            segmentData.append(entry.getValue());
-            String higherKey = sortedData.higherKey(key);
-            //确定地址是否连续
-            long currentKey = Long.parseLong(key, 16);
-
-            if (higherKey == null) {
-                segments.add(startAddress + key + segmentData.toString());
-                segmentCount++;
-                startAddress = null;
-                segmentData.setLength(0);
-            } else {
-                long nextKey = Long.parseLong(higherKey, 16);
-                if (nextKey != currentKey + 1) {
-                    segments.add(startAddress + key + segmentData.toString());
-                    segmentCount++;
-                    startAddress = null;
-                    segmentData.setLength(0);
-
-                }
-            }
-
-        }
-
-        if (isDataMissing(segments)) {
-            return "Error";
-        }
-        // 构建完整的输出
-        StringBuilder output = new StringBuilder();
-        output.append(collectorSNHexStrFormat);         //数据采集器序列号
-        output.append(deviceSNHexStrFormat);         //设备序列号
-        output.append(currentTimestampHexStrFormat);   //数据时间戳
-        switch (deviceType) {
-            case "dehumidifier" -> output.append("fb01");
-            case "bms" -> output.append("fc01");
-            case "bms_monomer" -> output.append("fc01");
-            case "liquidCooling" -> output.append("fa01");
-            case "batteryCell" -> output.append("f901");
-            case "dosimeter" -> output.append("fe01");
-            case "electricityMeter" -> output.append("fd01");
-            case "IOmodule" -> output.append("f601");
-            case "pcs" -> output.append("ff03");
-            case "AirConditioner" -> output.append("f501");
-            case "beidou" -> output.append("f401");
-        }
-        output.append(String.format("%02X", segmentCount));
-        //单体信息拼接特殊
-        if (!deviceType.equals("bms_monomer")) {
-            for (String segment : segments) {
-                output.append(segment);
-            }
-        } else {
-            output.append(bmsMonomerInfo);
-        }
-
-        return output.toString();
-    }
-
     /**
-     * 补齐字符串到指定长度，左侧填充0
-     * @param str
-     * @param length
-     * @return
+     * @param data bms_monomer的查询结果
+     * @param serialNumber 设备序列号
+     * @return f901数据帧, 数据不完整时返回{@link #INCOMPLETE}
      */
-    private static String padLeft(String str, int length) {
-        return String.format("%1$" + length * 2 + "s", str).replace(' ', '0');
+    public static String joinBmsMonomerData(List<Map<String, Object>> data, String serialNumber) {
+        // 查询结果按tag索引一次, 寄存器按地址排序后顺序写入
+        FrameHeaders.Header header = FrameHeaders.getInstance().header("batteryCell", serialNumber);
+        BmsCellFrame frame = BMS_CELL_FRAME.get();
+        return frame.encode(header, LocalDateTime.now(), data) ? frame.toHex() : INCOMPLETE;
     }
 
-    /**
-     * 获取当前时间时间戳，根据年月日时分秒转成十六进制6个字节
-     * @return
-     */
-    public static String getCurrentTimestampInHex() {
-        // 获取当前时间
+    public static String convertDataIntoSegment(Map<String, Object> data, String deviceSN, String deviceType) {
+        // 数据采集器序列号(30字节) + 设备序列号(30字节) + 数据时间戳(6字节) + 设备类型 + 数据区段, 直接按字节编码, 最后转换成十六进制
+        // 序列号前缀和设备类型代码按(设备类型, 设备序列号)缓存, io模块, 北斗和空调的序列号由数据采集器序列号生成
+        FrameHeaders.Header header = FrameHeaders.getInstance().header(deviceType, deviceSN);
+        SegmentEncoder encoder = SEGMENT_ENCODER.get();
         LocalDateTime now = LocalDateTime.now();
-        String year = intToHexStringFormat(now.getYear() - 2000, 2);
-        String month = intToHexStringFormat(now.getMonthValue(), 2);
-        String day = intToHexStringFormat(now.getDayOfMonth(), 2);
-        String hour = intToHexStringFormat(now.getHour(), 2);
-        String minute = intToHexStringFormat(now.getMinute(), 2);
-        String second = intToHexStringFormat(now.getSecond(), 2);
-        // 拼接结果
-        return year + month + day + hour + minute + second;
-    }
-
-    /**
-     * 将整数转成十六进制，并在左侧补0达到一定长度
-     * @param digital 整数
-     * @param num 位数
-     * @return
-     */
-    public static String intToHexStringFormat(int digital, int num) {
-        String hexString = Integer.toHexString(digital);
-        if (hexString.length() < num) {
-            hexString = '0' + hexString;
+        // 寄存器数量和布局一致时直接按布局编码, 学习的布局在寄存器集合变化时重新学习
+        RegisterLayout layout = RegisterLayout.get(deviceType);
+        boolean complete = layout != null && (layout.fixed() || layout.size() == data.size())
+                && encoder.begin(header, now).segments(data, layout);
+        if (!complete && (layout == null || !layout.fixed())) {
+            layout = RegisterLayout.learn(deviceType, data.keySet());
+            complete = layout != null && encoder.begin(header, now).segments(data, layout);
         }
-        return hexString;
+
+        return complete ? encoder.toHex() : INCOMPLETE;
     }
 
     public static List<String> convertTo06FunctionCodes(String modbus10) {
@@ -1153,41 +1573,4 @@ public class GWapi extends AbstractVerticle {
         }
     }
 
-
-    // 判断数据是否缺失
-    public static boolean isDataMissing(List<String> segments) {
-        // 假设每段数据结构为：起始地址(4位) + 结束地址(4位) + 数据值
-        // 每段数据由8个字符组成：4位地址+4位数据7
-        for (String segment : segments) {
-            // 校验每段数据的完整性，假设每个段的最小长度为8
-            if (segment.length() < 8) {
-                System.out.println("Invalid segment length: " + segment);
-                return true; // 数据长度不匹配，认为数据缺失
-            }
-
-            // 解析起始地址和结束地址
-            String startAddressHex = segment.substring(0, 4);
-            String endAddressHex = segment.substring(4, 8);
-
-            // 将地址转换为十进制
-            long startAddress = Long.parseLong(startAddressHex, 16);
-            long endAddress = Long.parseLong(endAddressHex, 16);
-
-            // 计算地址差值
-            long addressDiff = endAddress - startAddress + 1;
-
-            // 获取数据值的数量（数据值从第9位开始到末尾）
-            int valueCount = (segment.length() - 8) / 4; // 8位是地址，剩下是数据
-
-            // 判断是否数据缺失
-            if (addressDiff != valueCount) {
-                LOGGER.info("Data missing between addresses: " + startAddressHex + " - " + endAddressHex);
-                return true; // 数据缺失
-            }
-        }
-
-        // 如果所有段的地址差值和数据个数匹配，则认为数据完整
-        return false;
-    }
-
 }
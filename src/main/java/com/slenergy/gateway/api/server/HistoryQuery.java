@@ -0,0 +1,394 @@
+package com.slenergy.gateway.api.server;
+
+import com.slenergy.gateway.api.server.ingest.LatestValueStore;
+import com.slenergy.gateway.api.server.schema.DeviceRealTimeData;
+import com.slenergy.gateway.api.server.schema.ResponseEnum;
+import com.slenergy.gateway.database.influxdb.InfluxConnection;
+import com.influxdb.Cancellable;
+import com.influxdb.client.QueryApi;
+import com.influxdb.query.FluxRecord;
+import io.vertx.core.Context;
+import io.vertx.core.Vertx;
+import io.vertx.core.buffer.Buffer;
+import io.vertx.core.http.HttpHeaders;
+import io.vertx.core.http.HttpServerResponse;
+import io.vertx.core.json.Json;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+import java.time.OffsetDateTime;
+import java.time.ZonedDateTime;
+import java.time.format.DateTimeParseException;
+import java.util.Base64;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.regex.Pattern;
+
+/**
+ * class HistoryQuery description
+ * 单个设备历史数据的分页查询, 按时间倒序, 每次最多查询limit行, 用游标继续查询下一页
+ * 流式回复时只查询一次, 边读取查询结果边以chunked方式写入回复, 内存中只保留一块数据, 与查询的时间范围无关
+ * 指定window或aggregate时在实时数据库中按时间窗口聚合后再返回, 没有指定window时按目标点数和时间范围计算窗口
+ *
+ * <p>
+ * <pre>{@code
+ * HistoryQuery query = new HistoryQuery(connection, bucket, data, 1000);
+ * HistoryQuery.Page page = query.fetch(HistoryQuery.Cursor.parse(data.cursor()), 1000);
+ * // 下一页
+ * page = query.fetch(HistoryQuery.Cursor.parse(page.cursor()), 1000);
+ * }</pre>
+ * </p>
+ *
+ * @author Eric Li
+ * @version 1.0
+ *
+ * @since 2026-10-18
+ * @since 1.0
+ */
+public final class HistoryQuery {
+
+    private final static Logger LOGGER = LogManager.getLogger(HistoryQuery.class);
+    private final static Set<String> AGGREGATES = Set.of("mean", "max", "min", "first", "last");
+    private final static Pattern DURATION = Pattern.compile("^\\d+(ns|us|ms|s|m|h|d|w)$");
+    private final static String QUERY_ALL_BY_DEVICE = """
+            %s
+              from(bucket: "%s")
+          |> range(start: %s, stop: %s)
+          |> filter(fn: (r) => r._measurement == "%s" and r.deviceName == "%s" and r.deviceSN == "%s")%s
+          |> pivot(rowKey: ["_time"], columnKey: ["_field"], valueColumn: "_value")
+          |> sort(columns: ["_time"], desc: true)
+          |> group(columns: ["deviceName", "deviceSN", "tag"])
+          """;
+    /**
+     * 流式回复的查询, 顺序和分页查询相同, 不限制行数
+     */
+    private final static String QUERY_STREAM_BY_DEVICE = """
+            %s
+              from(bucket: "%s")
+          |> range(start: %s, stop: %s)
+          |> filter(fn: (r) => r._measurement == "%s" and r.deviceName == "%s" and r.deviceSN == "%s")%s
+          |> pivot(rowKey: ["_time"], columnKey: ["_field"], valueColumn: "_value")
+          |> group()
+          |> sort(columns: ["_time", "tag", "subTag"], desc: true)
+          """;
+    /**
+     * 按时间倒序, 时间相同时按tag和subTag排序, 保证每次查询的顺序一致
+     * 每个序列的每个字段本身按时间升序, 先用tail只保留最新的n个点, 合并后只需要排序每个序列最多n行,
+     * 不会对游标之前的全部数据排序. 序列中更早的行即使因为字段不全而不完整, 也排在前n行之后, 不会出现在结果中
+     */
+    private final static String QUERY_PAGE_BY_DEVICE = """
+            %s
+              from(bucket: "%s")
+          |> range(start: %s, stop: %s)
+          |> filter(fn: (r) => r._measurement == "%s" and r.deviceName == "%s" and r.deviceSN == "%s")%s
+          |> tail(n: %d)
+          |> pivot(rowKey: ["_time"], columnKey: ["_field"], valueColumn: "_value")
+          |> group()
+          |> sort(columns: ["_time", "tag", "subTag"], desc: true)
+          |> limit(n: %d)
+          """;
+
+    private final InfluxConnection connection;
+    private final String bucket;
+    private final DeviceRealTimeData data;
+    private final String stop;
+    /**
+     * 聚合的时间窗口以及聚合函数, 不聚合时为null
+     */
+    private final String window;
+    private final String aggregate;
+
+    /**
+     * 一页数据
+     * @param rows 数据
+     * @param cursor 下一页的游标, 没有更多数据时为null
+     */
+    public record Page(List<Map<String, Object>> rows, String cursor) {}
+
+    /**
+     * 游标, 上一页最后一行的时间以及这个时间已经返回的行数
+     * @param time 时间
+     * @param skip 已经返回的行数
+     */
+    public record Cursor(Instant time, int skip) {
+
+        /**
+         * @param token 游标字符串, 可以为空
+         * @return 游标, 字符串为空时返回null
+         * @throws IllegalArgumentException 游标格式不正确
+         */
+        public static Cursor parse(String token) {
+            if (token == null || token.isEmpty())
+                return null;
+
+            try {
+                String value = new String(Base64.getUrlDecoder().decode(token), StandardCharsets.UTF_8);
+                int index = value.lastIndexOf(',');
+                Cursor cursor = new Cursor(Instant.parse(value.substring(0, index)), Integer.parseInt(value.substring(index + 1)));
+                if (cursor.skip() <= 0)
+                    throw new IllegalArgumentException("游标格式不正确: " + token);
+                return cursor;
+            } catch (DateTimeParseException | IndexOutOfBoundsException | IllegalArgumentException e) {
+                throw new IllegalArgumentException("游标格式不正确: " + token, e);
+            }
+        }
+
+        public String token() {
+            return Base64.getUrlEncoder().withoutPadding().encodeToString((time + "," + skip).getBytes(StandardCharsets.UTF_8));
+        }
+
+    }
+
+    /**
+     *
+     * @param connection 实时数据库连接
+     * @param bucket 存储桶
+     * @param data 查询条件
+     * @param points 只指定aggregate时的默认目标点数
+     * @throws IllegalArgumentException 聚合参数不正确
+     */
+    public HistoryQuery(InfluxConnection connection, String bucket, DeviceRealTimeData data, int points) {
+        this.connection = connection;
+        this.bucket = bucket;
+        this.data = data;
+        this.stop = data.stop() == null ? "now()" : data.stop();
+        this.window = window(data, points);
+        this.aggregate = window == null ? null : data.aggregate() == null ? "mean" : data.aggregate();
+        if (aggregate != null && !AGGREGATES.contains(aggregate))
+            throw new IllegalArgumentException("不支持的聚合函数: " + aggregate);
+    }
+
+    public String window() {
+        return window;
+    }
+
+    public String aggregate() {
+        return aggregate;
+    }
+
+    /**
+     * 查询时间范围内的所有数据, 会阻塞线程
+     * @return 按tag分组的数据
+     */
+    public List<Map<String, Object>> all() {
+        return connection.query(String.format(QUERY_ALL_BY_DEVICE, imports(), bucket, data.start(), stop, data.measurement(), data.deviceName(), data.deviceSN(), downsample()));
+    }
+
+    /**
+     * 查询一页数据, 会阻塞线程
+     * @param cursor 游标, 查询第一页时为null
+     * @param limit 每页的行数
+     * @return 一页数据
+     */
+    public Page fetch(Cursor cursor, int limit) {
+        int skip = cursor == null ? 0 : cursor.skip();
+        // range的stop不包含在内, 加1纳秒才能查到和游标时间相同的行
+        String end = cursor == null ? stop : "time(v: \"" + cursor.time().plusNanos(1) + "\")";
+        List<Map<String, Object>> rows = connection.query(String.format(QUERY_PAGE_BY_DEVICE, imports(), bucket, data.start(), end, data.measurement(), data.deviceName(), data.deviceSN(), downsample(), limit + skip, limit + skip));
+        // 游标时间相同的行排在最前面, 跳过上一页已经返回的
+        List<Map<String, Object>> page = rows.subList(Math.min(skip, rows.size()), rows.size());
+        if (rows.size() < limit + skip || page.isEmpty())
+            return new Page(page, null);
+
+        Instant last = toInstant(page.get(page.size() - 1).get("_time"));
+        int count = 0;
+        for (Map<String, Object> row : rows) {
+            if (Objects.equals(last, toInstant(row.get("_time"))))
+                count++;
+        }
+        return new Page(page, new Cursor(last, count).token());
+    }
+
+    /**
+     * 只查询一次, 实时数据库每返回一行就编码一行, 累积chunkRows行后以chunked方式写入回复,
+     * data为所有行组成的数组, 和不分页的回复格式相同. 写入队列满时阻塞回调线程直到写完, 不再读取实时数据库的回复
+     * 需要在Vert.x的上下文中调用
+     * @param api 查询接口
+     * @param response 回复
+     * @param cursor 从游标处开始, 为null时从最新的数据开始
+     * @param chunkRows 每次写入回复的行数
+     */
+    public void stream(QueryApi api, HttpServerResponse response, Cursor cursor, int chunkRows) {
+        response.setChunked(true).putHeader(HttpHeaders.CONTENT_TYPE, "application/json");
+        response.write("{\"code\":" + ResponseEnum.SUCCESS.getCode() + ",\"message\":" + Json.encode(ResponseEnum.SUCCESS.getMessage()) + ",\"data\":[");
+        // range的stop不包含在内, 加1纳秒才能查到和游标时间相同的行
+        String end = cursor == null ? stop : "time(v: \"" + cursor.time().plusNanos(1) + "\")";
+        Streamer streamer = new Streamer(Vertx.currentContext(), response, cursor == null ? 0 : cursor.skip(), chunkRows);
+        api.query(String.format(QUERY_STREAM_BY_DEVICE, imports(), bucket, data.start(), end, data.measurement(), data.deviceName(), data.deviceSN(), downsample()),
+                streamer::row, streamer::fail, streamer::complete);
+    }
+
+    /**
+     * 在查询的回调线程中编码数据行, 在Vert.x的上下文中写入回复
+     */
+    private final class Streamer {
+
+        private final Context context;
+        private final HttpServerResponse response;
+        private final int chunkRows;
+        /**
+         * 已经交给上下文但还没有写完的块, 最多一块, 写入队列满时等到drain之后才释放
+         */
+        private final Semaphore inflight = new Semaphore(1);
+        private volatile boolean closed;
+        private int skip;
+        private Buffer buffer = Buffer.buffer();
+        private int pending;
+        private long written;
+
+        private Streamer(Context context, HttpServerResponse response, int skip, int chunkRows) {
+            this.context = context;
+            this.response = response;
+            this.skip = skip;
+            this.chunkRows = chunkRows;
+            // 客户端断开时不会再有drain, 释放等待的回调线程并取消查询
+            response.closeHandler(v -> {
+                closed = true;
+                inflight.release();
+            });
+        }
+
+        private void row(Cancellable cancellable, FluxRecord record) {
+            if (closed) {
+                cancellable.cancel();
+                return;
+            }
+            // 游标时间相同的行排在最前面, 跳过上一页已经返回的
+            if (skip > 0) {
+                skip--;
+                return;
+            }
+
+            if (written++ > 0)
+                buffer.appendByte((byte) ',');
+            buffer.appendBuffer(Json.encodeToBuffer(record.getValues()));
+            if (++pending >= chunkRows && !flush())
+                cancellable.cancel();
+        }
+
+        /**
+         * @return false: 客户端已经断开或者线程被中断
+         */
+        private boolean flush() {
+            try {
+                inflight.acquire();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return false;
+            }
+            if (closed)
+                return false;
+
+            Buffer chunk = buffer;
+            buffer = Buffer.buffer();
+            pending = 0;
+            context.runOnContext(v -> {
+                if (response.closed())
+                    return;
+                response.write(chunk);
+                if (response.writeQueueFull())
+                    response.drainHandler(d -> inflight.release());
+                else
+                    inflight.release();
+            });
+            return true;
+        }
+
+        private void complete() {
+            Buffer chunk = buffer;
+            context.runOnContext(v -> {
+                if (response.closed())
+                    return;
+                LOGGER.info("流式回复{}的{}行数据", data.deviceSN(), written);
+                response.end(chunk.appendString("]}"));
+            });
+        }
+
+        private void fail(Throwable e) {
+            // 回复头已经发送, 只能断开连接让客户端知道数据不完整
+            LOGGER.error("流式查询{}的历史数据失败: {}", data.deviceSN(), e.getMessage());
+            context.runOnContext(v -> response.reset());
+        }
+
+    }
+
+    /**
+     * mean, max和min只能用于数值字段, 需要先过滤掉字符串等其他类型的字段
+     */
+    private boolean numeric() {
+        return aggregate != null && !"first".equals(aggregate) && !"last".equals(aggregate);
+    }
+
+    private String imports() {
+        return numeric() ? "import \"types\"" : "";
+    }
+
+    private String downsample() {
+        if (window == null)
+            return "";
+
+        return (numeric() ? "\n|> filter(fn: (r) => types.isNumeric(v: r._value))" : "")
+                + "\n|> aggregateWindow(every: " + window + ", fn: " + aggregate + ", createEmpty: false)";
+    }
+
+    /**
+     * 指定window时直接使用, 否则按目标点数平分时间范围, 最小1秒, 没有指定任何聚合参数时不聚合
+     */
+    private static String window(DeviceRealTimeData data, int points) {
+        if (data.window() != null) {
+            if (!DURATION.matcher(data.window()).matches())
+                throw new IllegalArgumentException("无法解析时间窗口: " + data.window());
+            return data.window();
+        }
+        if (data.points() == null && data.aggregate() == null)
+            return null;
+
+        int target = data.points() == null ? points : data.points();
+        if (target <= 0)
+            throw new IllegalArgumentException("points必须大于0");
+
+        Instant now = Instant.now();
+        Instant start = toInstant(data.start(), now);
+        Instant stop = data.stop() == null ? now : toInstant(data.stop(), now);
+        if (start == null || stop == null || !stop.isAfter(start))
+            throw new IllegalArgumentException("无法根据时间范围计算窗口, 请指定window");
+
+        long nanos = TimeUnit.SECONDS.toNanos(stop.getEpochSecond() - start.getEpochSecond()) + stop.getNano() - start.getNano();
+        return Math.max(1, (nanos / target + TimeUnit.SECONDS.toNanos(1) - 1) / TimeUnit.SECONDS.toNanos(1)) + "s";
+    }
+
+    /**
+     * @param time flux中的时间, 可以是now(), 相对时间或者RFC3339格式的绝对时间
+     * @return 时间, 无法解析时返回null
+     */
+    private static Instant toInstant(String time, Instant now) {
+        if (time == null)
+            return null;
+        try {
+            if ("now()".equals(time))
+                return now;
+            if (time.startsWith("-"))
+                return now.minusNanos(LatestValueStore.toNanos(time));
+            return Instant.parse(time);
+        } catch (IllegalArgumentException | DateTimeParseException e) {
+            return null;
+        }
+    }
+
+    private static Instant toInstant(Object time) {
+        if (time instanceof Instant instant)
+            return instant;
+        if (time instanceof OffsetDateTime offset)
+            return offset.toInstant();
+        if (time instanceof ZonedDateTime zoned)
+            return zoned.toInstant();
+        return time == null ? null : Instant.parse(time.toString());
+    }
+
+}
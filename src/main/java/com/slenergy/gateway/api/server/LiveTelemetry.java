@@ -0,0 +1,266 @@
+package com.slenergy.gateway.api.server;
+
+import com.slenergy.gateway.api.server.device.RealTimeDevice;
+import com.slenergy.gateway.api.server.ingest.DeviceUpdater;
+import io.vertx.core.Vertx;
+import io.vertx.core.buffer.Buffer;
+import io.vertx.core.eventbus.MessageConsumer;
+import io.vertx.core.http.HttpHeaders;
+import io.vertx.core.http.HttpServerResponse;
+import io.vertx.core.json.JsonObject;
+import io.vertx.ext.web.RoutingContext;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * class LiveTelemetry description
+ * 实时数据订阅, 客户端通过Server-Sent Events订阅设备类型或者设备序列号, 写入路由更新{@link MessageQueue}中的设备后推送设备的最新数据
+ * 写入路由只在事件总线上发布设备序列号, 每个订阅者只记录有更新的设备, 按flushInterval合并后推送,
+ * 订阅者的写入队列满时等待写完再推送, 期间的更新继续合并, 慢的订阅者不会影响写入路由
+ *
+ * <p>
+ * <pre>{@code
+ * LiveTelemetry.getInstance().initialize(vertx, config.getJsonObject("subscribe"));
+ * IngestListener listener = IngestListener.compose(new DeviceUpdater(sqlite, LiveTelemetry.getInstance()::publish), encoder);
+ * router.get("/data/realtime/subscribe").handler(LiveTelemetry.getInstance()::subscribe);
+ * }</pre>
+ * </p>
+ *
+ * @author Eric Li
+ * @version 1.0
+ *
+ * @since 2026-10-18
+ * @since 1.0
+ */
+public final class LiveTelemetry {
+
+    private final static Logger LOGGER = LogManager.getLogger(LiveTelemetry.class);
+    private static LiveTelemetry INSTANCE = null;
+    /**
+     * 设备更新的事件总线地址
+     */
+    public final static String ADDRESS = "gateway.device.updated";
+
+    private final AtomicInteger subscribers;
+    private final LongAdder published;
+    private final LongAdder pushed;
+    private final LongAdder coalesced;
+    private Vertx vertx;
+    private boolean enabled;
+    private int maxSubscribers;
+    private long flushInterval;
+    private long heartbeat;
+
+    public static synchronized LiveTelemetry getInstance() {
+        if (INSTANCE == null) {
+            INSTANCE = new LiveTelemetry();
+        }
+
+        return INSTANCE;
+    }
+
+    private LiveTelemetry() {
+        subscribers = new AtomicInteger(0);
+        published = new LongAdder();
+        pushed = new LongAdder();
+        coalesced = new LongAdder();
+        initialize(null, null);
+    }
+
+    /**
+     *
+     * @param vertx vertx实例
+     * @param options 订阅配置, enabled: 是否开启, maxSubscribers: 最多订阅者数量, flushInterval: 合并推送的间隔(毫秒),
+     *                heartbeat: 没有更新时发送心跳的间隔(毫秒)
+     */
+    public synchronized void initialize(Vertx vertx, JsonObject options) {
+        JsonObject opts = options == null ? new JsonObject() : options;
+        this.vertx = vertx;
+        enabled = opts.getBoolean("enabled", true);
+        maxSubscribers = opts.getInteger("maxSubscribers", 64);
+        flushInterval = opts.getLong("flushInterval", 200L);
+        heartbeat = opts.getLong("heartbeat", 15000L);
+    }
+
+    /**
+     * 设备的属性已经更新, 发布设备序列号, 没有订阅者时不发布
+     * 作为{@link DeviceUpdater}的完成回调, 交给sqlite执行器的属性更新之后才调用, 可以在任意线程调用
+     * @param deviceType 设备类型
+     * @param serialNumber 设备序列号
+     */
+    public void publish(String deviceType, String serialNumber) {
+        if (serialNumber != null && vertx != null && subscribers.get() > 0 && MessageQueue.getInstance().getRealTimeDevice(serialNumber) != null) {
+            vertx.eventBus().publish(ADDRESS, new JsonObject().put("deviceType", deviceType).put("deviceSN", serialNumber));
+            published.increment();
+        }
+    }
+
+    /**
+     * 订阅路由, 查询参数deviceType和deviceSN可以重复或者用逗号分隔, 都为空时订阅所有设备
+     * 订阅后先推送一次所有匹配设备的当前数据, 之后只推送有更新的设备
+     * @param ctx 路由上下文
+     */
+    public void subscribe(RoutingContext ctx) {
+        if (!enabled) {
+            ctx.fail(404);
+            return;
+        }
+        if (subscribers.incrementAndGet() > maxSubscribers) {
+            subscribers.decrementAndGet();
+            LOGGER.warn("订阅者数量超过上限{}", maxSubscribers);
+            ctx.fail(503);
+            return;
+        }
+
+        Subscriber subscriber = new Subscriber(ctx, values(ctx.queryParam("deviceType")), values(ctx.queryParam("deviceSN")));
+        subscriber.start();
+    }
+
+    /**
+     * @return 订阅情况
+     */
+    public JsonObject metrics() {
+        return new JsonObject()
+                .put("enabled", enabled)
+                .put("subscribers", subscribers.get())
+                .put("published", published.sum())
+                .put("pushed", pushed.sum())
+                .put("coalesced", coalesced.sum());
+    }
+
+    private static Set<String> values(List<String> params) {
+        Set<String> ret = new HashSet<>();
+        for (String param : params) {
+            for (String value : param.split(",")) {
+                if (!value.isBlank())
+                    ret.add(value.trim());
+            }
+        }
+        return ret;
+    }
+
+    /**
+     * 一个订阅者, 所有方法都在订阅路由的事件循环线程中执行
+     */
+    private final class Subscriber {
+
+        private final RoutingContext ctx;
+        private final HttpServerResponse response;
+        private final Set<String> deviceTypes;
+        private final Set<String> serialNumbers;
+        /**
+         * 有更新但还没有推送的设备序列号
+         */
+        private final Set<String> pending;
+        private MessageConsumer<JsonObject> consumer;
+        private long flushTimer;
+        private long heartbeatTimer;
+        private boolean closed;
+
+        private Subscriber(RoutingContext ctx, Set<String> deviceTypes, Set<String> serialNumbers) {
+            this.ctx = ctx;
+            this.response = ctx.response();
+            this.deviceTypes = deviceTypes;
+            this.serialNumbers = serialNumbers;
+            this.pending = new LinkedHashSet<>();
+            this.flushTimer = -1;
+        }
+
+        private void start() {
+            response.setChunked(true)
+                    .putHeader(HttpHeaders.CONTENT_TYPE, "text/event-stream")
+                    .putHeader(HttpHeaders.CACHE_CONTROL, "no-cache")
+                    .closeHandler(v -> close())
+                    .exceptionHandler(e -> close());
+            consumer = ctx.vertx().eventBus().consumer(ADDRESS, message -> update(message.body()));
+            heartbeatTimer = ctx.vertx().setPeriodic(heartbeat, id -> {
+                if (!response.writeQueueFull())
+                    response.write(": ping\n\n");
+            });
+
+            MessageQueue queue = MessageQueue.getInstance();
+            queue.getInverters().forEach(device -> snapshot("inverter", device));
+            queue.getHeatPumps().forEach(device -> snapshot("heatPump", device));
+            queue.getChargingPiles().forEach(device -> snapshot("chargingPile", device));
+            flush();
+        }
+
+        private void snapshot(String deviceType, RealTimeDevice device) {
+            if (matches(deviceType, device.getSerialNumber()))
+                pending.add(device.getSerialNumber());
+        }
+
+        private boolean matches(String deviceType, String serialNumber) {
+            if (deviceTypes.isEmpty() && serialNumbers.isEmpty())
+                return true;
+
+            return deviceTypes.contains(deviceType) || serialNumbers.contains(serialNumber);
+        }
+
+        private void update(JsonObject body) {
+            String serialNumber = body.getString("deviceSN");
+            if (closed || !matches(body.getString("deviceType"), serialNumber))
+                return;
+
+            if (!pending.add(serialNumber))
+                coalesced.increment();
+            if (flushTimer < 0)
+                flushTimer = ctx.vertx().setTimer(flushInterval, id -> {
+                    flushTimer = -1;
+                    flush();
+                });
+        }
+
+        private void flush() {
+            if (closed || pending.isEmpty())
+                return;
+            // 等写完再推送, 期间的更新继续合并到pending中
+            if (response.writeQueueFull()) {
+                response.drainHandler(v -> flush());
+                return;
+            }
+
+            Buffer buffer = Buffer.buffer();
+            MessageQueue queue = MessageQueue.getInstance();
+            for (String serialNumber : pending) {
+                RealTimeDevice device = queue.getRealTimeDevice(serialNumber);
+                if (device == null)
+                    continue;
+
+                JsonObject data = new JsonObject()
+                        .put("deviceType", device.getDeviceType())
+                        .put("deviceSN", serialNumber)
+                        .put("timestamp", device.getTimestamp())
+                        .put("dynamic", device.toDynamicData())
+                        .put("static", device.toStaticData());
+                buffer.appendString("event: device\ndata: ").appendBuffer(data.toBuffer()).appendString("\n\n");
+                pushed.increment();
+            }
+            pending.clear();
+            if (buffer.length() > 0)
+                response.write(buffer);
+        }
+
+        private void close() {
+            if (closed)
+                return;
+
+            closed = true;
+            subscribers.decrementAndGet();
+            if (consumer != null)
+                consumer.unregister();
+            ctx.vertx().cancelTimer(heartbeatTimer);
+            if (flushTimer >= 0)
+                ctx.vertx().cancelTimer(flushTimer);
+        }
+
+    }
+
+}
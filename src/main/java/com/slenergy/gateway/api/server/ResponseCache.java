@@ -0,0 +1,221 @@
+package com.slenergy.gateway.api.server;
+
+import com.slenergy.gateway.api.server.ingest.InfluxWriter;
+import io.vertx.core.buffer.Buffer;
+import io.vertx.core.json.JsonObject;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.zip.CRC32C;
+
+/**
+ * class ResponseCache description
+ * 历史数据查询的回复缓存, 按查询条件缓存序列化好的回复以及ETag, 所有实例共享
+ * 每个设备有一个版本号, 设备的新数据写入实时数据库之后版本号加一, 版本号变化的缓存不再使用
+ * 写入路由收到数据时数据还在{@link InfluxWriter}的缓冲区中, 这时查询不到新数据, 所以不在收到数据时使缓存失效
+ * 相对时间范围的查询结果会随时间变化, 超过ttl的缓存也不再使用
+ *
+ * <p>
+ * <pre>{@code
+ * ResponseCache cache = ResponseCache.getInstance();
+ * ResponseCache.Entry entry = cache.get(key);
+ * if (entry == null) {
+ *     long version = cache.version(key.deviceSN());
+ *     entry = cache.put(key, version, Json.encodeToBuffer(results));
+ * }
+ * }</pre>
+ * </p>
+ *
+ * @author Eric Li
+ * @version 1.0
+ *
+ * @since 2026-10-18
+ * @since 1.0
+ */
+public final class ResponseCache {
+
+    private final static Logger LOGGER = LogManager.getLogger(ResponseCache.class);
+    private static ResponseCache INSTANCE = null;
+
+    /**
+     * 查询条件 -> 回复, 按访问顺序排列, 最久没有访问的先淘汰
+     */
+    private final LinkedHashMap<Key, Entry> entries;
+    /**
+     * 设备序列号 -> 版本号
+     */
+    private final Map<String, AtomicLong> versions;
+    private final LongAdder hits;
+    private final LongAdder misses;
+    private final LongAdder notModified;
+    private long bytes;
+    private boolean enabled;
+    private int maxEntries;
+    private long maxBytes;
+    private long ttl;
+
+    /**
+     * 查询条件, 不分页时limit和cursor为null, 不聚合时window和aggregate为null
+     */
+    public record Key(String measurement, String deviceName, String deviceSN, String start, String stop, Integer limit, String cursor, String window, String aggregate) {}
+
+    /**
+     * 缓存的回复
+     * @param body 序列化好的回复
+     * @param etag 回复内容的ETag
+     * @param version 查询时的设备版本号
+     * @param created 缓存时间(纳秒)
+     */
+    public record Entry(Buffer body, String etag, long version, long created) {}
+
+    public static synchronized ResponseCache getInstance() {
+        if (INSTANCE == null) {
+            INSTANCE = new ResponseCache();
+        }
+
+        return INSTANCE;
+    }
+
+    private ResponseCache() {
+        entries = new LinkedHashMap<>(16, 0.75f, true);
+        versions = new ConcurrentHashMap<>();
+        hits = new LongAdder();
+        misses = new LongAdder();
+        notModified = new LongAdder();
+        initialize(null);
+    }
+
+    /**
+     *
+     * @param options 缓存配置, enabled: 是否开启, maxEntries: 最多缓存的回复数量, maxBytes: 缓存的回复总大小上限,
+     *                ttl: 缓存的有效时间(秒)
+     */
+    public synchronized void initialize(JsonObject options) {
+        JsonObject opts = options == null ? new JsonObject() : options;
+        enabled = opts.getBoolean("enabled", true);
+        maxEntries = opts.getInteger("maxEntries", 256);
+        maxBytes = opts.getLong("maxBytes", 16L * 1024 * 1024);
+        ttl = TimeUnit.SECONDS.toNanos(opts.getLong("ttl", 60L));
+        entries.clear();
+        bytes = 0;
+    }
+
+    /**
+     * @param key 查询条件
+     * @return 缓存的回复, 没有缓存或者缓存已经失效时返回null
+     */
+    public synchronized Entry get(Key key) {
+        Entry entry = enabled ? entries.get(key) : null;
+        if (entry == null) {
+            misses.increment();
+            return null;
+        }
+
+        if (entry.version() != version(key.deviceSN()) || System.nanoTime() - entry.created() > ttl) {
+            remove(key);
+            misses.increment();
+            return null;
+        }
+
+        hits.increment();
+        return entry;
+    }
+
+    /**
+     * 缓存回复, 查询期间设备有新数据时只返回不缓存
+     * @param key 查询条件
+     * @param version 查询之前的设备版本号
+     * @param body 序列化好的回复
+     * @return 回复
+     */
+    public synchronized Entry put(Key key, long version, Buffer body) {
+        Entry entry = new Entry(body, etag(body), version, System.nanoTime());
+        // 单个回复超过总大小的四分之一时不缓存, 防止一个大查询清空缓存
+        if (!enabled || version != version(key.deviceSN()) || body.length() > maxBytes / 4)
+            return entry;
+
+        remove(key);
+        entries.put(key, entry);
+        bytes += body.length();
+        Iterator<Map.Entry<Key, Entry>> iterator = entries.entrySet().iterator();
+        while ((entries.size() > maxEntries || bytes > maxBytes) && iterator.hasNext()) {
+            bytes -= iterator.next().getValue().body().length();
+            iterator.remove();
+        }
+        return entry;
+    }
+
+    /**
+     * @param serialNumber 设备序列号
+     * @return 设备当前的版本号
+     */
+    public long version(String serialNumber) {
+        AtomicLong version = serialNumber == null ? null : versions.get(serialNumber);
+        return version == null ? 0 : version.get();
+    }
+
+    /**
+     * 设备的新数据已经写入实时数据库, 之前缓存的回复不再使用, 由{@link InfluxWriter#onWritten}调用
+     * @param serialNumber 设备序列号
+     */
+    public void invalidate(String serialNumber) {
+        if (serialNumber != null)
+            versions.computeIfAbsent(serialNumber, k -> new AtomicLong(0)).incrementAndGet();
+    }
+
+    /**
+     * 判断客户端缓存的回复是否还能使用, 可以使用时计入304的次数
+     * @param entry 缓存的回复
+     * @param ifNoneMatch 请求的If-None-Match, 可以是逗号分隔的多个ETag或者*, 可以为空
+     * @return 是否只需要回复304
+     */
+    public boolean notModified(Entry entry, String ifNoneMatch) {
+        if (ifNoneMatch == null)
+            return false;
+
+        for (String tag : ifNoneMatch.split(",")) {
+            String value = tag.trim();
+            // 弱比较, 忽略W/前缀
+            if (value.startsWith("W/"))
+                value = value.substring(2);
+            if (value.equals("*") || value.equals(entry.etag())) {
+                notModified.increment();
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * @return 缓存的使用情况
+     */
+    public synchronized JsonObject metrics() {
+        return new JsonObject()
+                .put("enabled", enabled)
+                .put("entries", entries.size())
+                .put("bytes", bytes)
+                .put("hits", hits.sum())
+                .put("misses", misses.sum())
+                .put("notModified", notModified.sum());
+    }
+
+    private void remove(Key key) {
+        Entry old = entries.remove(key);
+        if (old != null)
+            bytes -= old.body().length();
+    }
+
+    private static String etag(Buffer body) {
+        CRC32C crc = new CRC32C();
+        crc.update(body.getBytes());
+        return "\"" + Long.toHexString(crc.getValue()) + "-" + Integer.toHexString(body.length()) + "\"";
+    }
+
+}
@@ -0,0 +1,162 @@
+package com.slenergy.gateway.api.server;
+
+import io.vertx.core.Future;
+import io.vertx.core.Vertx;
+import io.vertx.core.WorkerExecutor;
+import io.vertx.core.json.JsonObject;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * class WorkerPool description
+ * 执行阻塞操作的线程池, 所有GWapi实例共享, 路由的事件循环线程只负责解析请求和回复
+ * 按用途分为实时数据库({@link #INFLUX}), CAN通讯({@link #CAN})以及SQLite({@link #SQLITE})三个线程池, 分别统计排队和执行情况
+ *
+ * <p>
+ * <pre>{@code
+ * WorkerPool.get(WorkerPool.INFLUX).execute(() -> connection.query(flux))
+ *         .onSuccess(results -> ctx.json(results))
+ *         .onFailure(ctx::fail);
+ * }</pre>
+ * </p>
+ *
+ * @author Eric Li
+ * @version 1.0
+ *
+ * @since 2026-10-18
+ * @since 1.0
+ */
+public final class WorkerPool {
+
+    private final static Logger LOGGER = LogManager.getLogger(WorkerPool.class);
+    private final static Map<String, WorkerPool> POOLS = new ConcurrentHashMap<>();
+
+    public final static String INFLUX = "influx";
+    public final static String CAN = "can";
+    public final static String SQLITE = "sqlite";
+
+    private final String name;
+    private final int size;
+    private final boolean ordered;
+    private final WorkerExecutor executor;
+    /**
+     * 等待执行和正在执行的任务数量
+     */
+    private final AtomicInteger queued;
+    private final AtomicInteger active;
+    private final LongAdder completed;
+    private final LongAdder failed;
+    /**
+     * 任务排队等待的总时间和最长时间(纳秒)
+     */
+    private final LongAdder totalWait;
+    private final AtomicLong maxWait;
+
+    private WorkerPool(Vertx vertx, String name, int size, long maxExecuteTime, boolean ordered) {
+        this.name = name;
+        this.size = size;
+        this.ordered = ordered;
+        this.executor = vertx.createSharedWorkerExecutor("gateway-" + name, size, maxExecuteTime, TimeUnit.SECONDS);
+        queued = new AtomicInteger(0);
+        active = new AtomicInteger(0);
+        completed = new LongAdder();
+        failed = new LongAdder();
+        totalWait = new LongAdder();
+        maxWait = new AtomicLong(0);
+    }
+
+    /**
+     * 创建所有线程池, 只需要调用一次
+     * @param vertx vertx实例
+     * @param options 线程池配置, 每个线程池可以配置 size: 线程数量, maxExecuteTime: 单个任务的最长执行时间(秒)
+     */
+    public static void initialize(Vertx vertx, JsonObject options) {
+        JsonObject opts = options == null ? new JsonObject() : options;
+        // CAN总线同一时间只能处理一条指令, SQLite同一时间只能有一个写入, 都按提交顺序执行
+        create(vertx, INFLUX, opts.getJsonObject(INFLUX), 4, 30, false);
+        create(vertx, CAN, opts.getJsonObject(CAN), 1, 30, true);
+        create(vertx, SQLITE, opts.getJsonObject(SQLITE), 1, 10, true);
+    }
+
+    private static void create(Vertx vertx, String name, JsonObject options, int size, long maxExecuteTime, boolean ordered) {
+        JsonObject opts = options == null ? new JsonObject() : options;
+        WorkerPool pool = new WorkerPool(vertx, name, opts.getInteger("size", size), opts.getLong("maxExecuteTime", maxExecuteTime), ordered);
+        POOLS.put(name, pool);
+        LOGGER.info("创建线程池{}, 线程数量: {}", name, pool.size);
+    }
+
+    public static WorkerPool get(String name) {
+        WorkerPool pool = POOLS.get(name);
+        if (pool == null)
+            throw new IllegalStateException("线程池" + name + "没有初始化");
+
+        return pool;
+    }
+
+    /**
+     * 在线程池中执行阻塞任务, 结果在调用者的上下文中返回
+     * @param task 阻塞任务
+     * @return 任务结果
+     * @param <T> 结果类型
+     */
+    public <T> Future<T> execute(Callable<T> task) {
+        long submitted = System.nanoTime();
+        queued.incrementAndGet();
+        return executor.executeBlocking(() -> {
+            long wait = System.nanoTime() - submitted;
+            totalWait.add(wait);
+            maxWait.accumulateAndGet(wait, Math::max);
+            queued.decrementAndGet();
+            active.incrementAndGet();
+            try {
+                T result = task.call();
+                completed.increment();
+                return result;
+            } catch (Exception e) {
+                failed.increment();
+                throw e;
+            } finally {
+                active.decrementAndGet();
+            }
+        }, ordered);
+    }
+
+    /**
+     * @return 把任务提交到线程池的{@link Executor}, 不关心结果, 任务抛出的异常只记录日志
+     */
+    public Executor asExecutor() {
+        return task -> execute(() -> {
+            task.run();
+            return null;
+        }).onFailure(e -> LOGGER.warn("线程池{}中的任务执行失败: {}", name, e.getMessage()));
+    }
+
+    /**
+     * @return 所有线程池的排队和执行情况
+     */
+    public static JsonObject metrics() {
+        JsonObject ret = new JsonObject();
+        POOLS.forEach((name, pool) -> {
+            long done = pool.completed.sum() + pool.failed.sum();
+            ret.put(name, new JsonObject()
+                    .put("size", pool.size)
+                    .put("queued", pool.queued.get())
+                    .put("active", pool.active.get())
+                    .put("completed", pool.completed.sum())
+                    .put("failed", pool.failed.sum())
+                    .put("avgWaitMs", done == 0 ? 0 : TimeUnit.NANOSECONDS.toMillis(pool.totalWait.sum() / done))
+                    .put("maxWaitMs", TimeUnit.NANOSECONDS.toMillis(pool.maxWait.get())));
+        });
+        return ret;
+    }
+
+}
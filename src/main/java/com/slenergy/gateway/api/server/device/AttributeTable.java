@@ -0,0 +1,259 @@
+package com.slenergy.gateway.api.server.device;
+
+import io.vertx.core.json.JsonObject;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import java.lang.invoke.LambdaMetafactory;
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.reflect.Method;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.BiConsumer;
+import java.util.function.Function;
+import java.util.function.ObjDoubleConsumer;
+import java.util.function.ObjIntConsumer;
+import java.util.function.ObjLongConsumer;
+
+/**
+ * class AttributeTable description
+ * 设备属性名到setter的分发表, 每个设备类在类加载时建立一次, 代替setAttribute中的字符串switch
+ * 普通属性的setter通过{@link LambdaMetafactory}生成, 数值会按setter的参数类型转换, 嵌套属性和需要换算的属性单独指定
+ * 没有setter的属性不会被忽略, 而是按设备类统计次数
+ *
+ * <p>
+ * <pre>{@code
+ * static final AttributeTable<Battery> SETTERS = AttributeTable.builder(Battery.class, MethodHandles.lookup())
+ *         .inherit(RealTimeDevice.SETTERS)
+ *         .properties("soc", "soh")
+ *         .build();
+ * SETTERS.apply(battery, "soc", 95.0);
+ * }</pre>
+ * </p>
+ *
+ * @author Eric Li
+ * @version 1.0
+ *
+ * @since 2026-10-18
+ * @since 1.0
+ */
+public final class AttributeTable<T> {
+
+    private final static Logger LOGGER = LogManager.getLogger(AttributeTable.class);
+    /**
+     * 没有setter的属性, 设备类名.属性名 -> 次数
+     */
+    private final static Map<String, LongAdder> UNKNOWN = new ConcurrentHashMap<>();
+    private final static int MAX_UNKNOWN = 1024;
+
+    private final String name;
+    private final Map<String, BiConsumer<? super T, Object>> setters;
+
+    private AttributeTable(String name, Map<String, BiConsumer<? super T, Object>> setters) {
+        this.name = name;
+        this.setters = setters;
+    }
+
+    public static <T> Builder<T> builder(Class<T> type, MethodHandles.Lookup lookup) {
+        return new Builder<>(type, lookup);
+    }
+
+    /**
+     * 设置属性
+     * @param target 设备
+     * @param key 属性名
+     * @param value 属性值
+     * @return 是否有对应的setter
+     */
+    public boolean apply(T target, String key, Object value) {
+        BiConsumer<? super T, Object> setter = setters.get(key);
+        if (setter == null) {
+            unknown(key);
+            return false;
+        }
+
+        setter.accept(target, value);
+        return true;
+    }
+
+    public boolean contains(String key) {
+        return setters.containsKey(key);
+    }
+
+    private void unknown(String key) {
+        String field = name + "." + key;
+        LongAdder count = UNKNOWN.get(field);
+        if (count == null) {
+            if (UNKNOWN.size() >= MAX_UNKNOWN)
+                return;
+            LOGGER.debug("{}没有属性{}", name, key);
+            count = UNKNOWN.computeIfAbsent(field, k -> new LongAdder());
+        }
+        count.increment();
+    }
+
+    /**
+     * @return 没有setter的属性以及出现的次数
+     */
+    public static JsonObject unknownFields() {
+        JsonObject ret = new JsonObject();
+        UNKNOWN.forEach((field, count) -> ret.put(field, count.sum()));
+        return ret;
+    }
+
+    public static double toDouble(Object value) {
+        return ((Number) value).doubleValue();
+    }
+
+    public static int toInt(Object value) {
+        return ((Number) value).intValue();
+    }
+
+    public static long toLong(Object value) {
+        return ((Number) value).longValue();
+    }
+
+    public static final class Builder<T> {
+
+        private final Class<T> type;
+        private final MethodHandles.Lookup lookup;
+        private final Map<String, BiConsumer<? super T, Object>> setters;
+
+        private Builder(Class<T> type, MethodHandles.Lookup lookup) {
+            this.type = type;
+            this.lookup = lookup;
+            this.setters = new HashMap<>();
+        }
+
+        /**
+         * 继承父类的所有属性
+         */
+        public Builder<T> inherit(AttributeTable<? super T> parent) {
+            parent.setters.forEach((key, setter) -> setters.put(key, setter::accept));
+            return this;
+        }
+
+        /**
+         * 属性名和setter名一致的属性, 即属性xxx对应setXxx
+         */
+        public Builder<T> properties(String... keys) {
+            for (String key : keys)
+                property(key, "set" + Character.toUpperCase(key.charAt(0)) + key.substring(1));
+            return this;
+        }
+
+        /**
+         * 属性名和setter名不一致的属性
+         */
+        public Builder<T> property(String key, String setter) {
+            setters.put(key, generate(setter));
+            return this;
+        }
+
+        public Builder<T> put(String key, BiConsumer<? super T, Object> setter) {
+            setters.put(key, setter);
+            return this;
+        }
+
+        /**
+         * 把嵌套对象的属性加入到分发表中, 已经存在的属性不会被覆盖
+         * @param nested 嵌套对象的分发表
+         * @param getter 获取嵌套对象
+         */
+        public <V> Builder<T> delegate(AttributeTable<V> nested, Function<? super T, ? extends V> getter) {
+            return delegate("", nested, getter);
+        }
+
+        /**
+         * 把嵌套对象的属性加上前缀后加入到分发表中, 已经存在的属性不会被覆盖
+         * @param prefix 属性名前缀
+         * @param nested 嵌套对象的分发表
+         * @param getter 获取嵌套对象
+         */
+        public <V> Builder<T> delegate(String prefix, AttributeTable<V> nested, Function<? super T, ? extends V> getter) {
+            nested.setters.forEach((key, setter) -> setters.putIfAbsent(prefix + key, (t, v) -> setter.accept(getter.apply(t), v)));
+            return this;
+        }
+
+        /**
+         * 数值属性在设置之前乘以系数, 用于单位换算
+         * @param factor 系数
+         * @param keys 已经存在的属性
+         */
+        public Builder<T> scale(double factor, String... keys) {
+            for (String key : keys) {
+                BiConsumer<? super T, Object> setter = setters.get(key);
+                if (setter == null)
+                    throw new IllegalArgumentException(type.getSimpleName() + "没有属性" + key);
+                setters.put(key, (t, v) -> setter.accept(t, v instanceof Number n ? n.doubleValue() * factor : v));
+            }
+            return this;
+        }
+
+        public AttributeTable<T> build() {
+            return new AttributeTable<T>(type.getSimpleName(), Map.copyOf(setters));
+        }
+
+        @SuppressWarnings("unchecked")
+        private BiConsumer<? super T, Object> generate(String name) {
+            // 优先使用没有返回值的setter, 有返回值的setter(例如返回执行结果)忽略返回值
+            // getMethods的顺序不确定, 同一优先级有多个重载时无法确定使用哪一个, 直接报错
+            Method method = null;
+            for (Method m : type.getMethods()) {
+                if (!m.getName().equals(name) || m.getParameterCount() != 1 || m.isBridge())
+                    continue;
+                if (method == null || (m.getReturnType() == void.class && method.getReturnType() != void.class)) {
+                    method = m;
+                } else if ((m.getReturnType() == void.class) == (method.getReturnType() == void.class)) {
+                    throw new IllegalArgumentException(type.getSimpleName() + "的方法" + name + "有多个重载, 请使用put指定setter");
+                }
+            }
+            if (method == null)
+                throw new IllegalArgumentException(type.getSimpleName() + "没有方法" + name);
+
+            Class<?> param = method.getParameterTypes()[0];
+            try {
+                MethodHandle handle = lookup.unreflect(method);
+                if (param == double.class) {
+                    ObjDoubleConsumer<T> setter = (ObjDoubleConsumer<T>) metafactory(ObjDoubleConsumer.class, handle, double.class);
+                    return (t, v) -> setter.accept(t, toDouble(v));
+                }
+                if (param == int.class) {
+                    ObjIntConsumer<T> setter = (ObjIntConsumer<T>) metafactory(ObjIntConsumer.class, handle, int.class);
+                    return (t, v) -> setter.accept(t, toInt(v));
+                }
+                if (param == long.class) {
+                    ObjLongConsumer<T> setter = (ObjLongConsumer<T>) metafactory(ObjLongConsumer.class, handle, long.class);
+                    return (t, v) -> setter.accept(t, toLong(v));
+                }
+
+                return (BiConsumer<T, Object>) metafactory(BiConsumer.class, handle, param.isPrimitive() ? MethodType.methodType(param).wrap().returnType() : param);
+            } catch (Throwable e) {
+                throw new IllegalStateException("无法生成" + type.getSimpleName() + "." + name, e);
+            }
+        }
+
+        /**
+         * 生成函数式接口的实现, 接口方法名都是accept
+         * @param iface 函数式接口
+         * @param handle setter
+         * @param param 接口方法中第二个参数的类型
+         */
+        private Object metafactory(Class<?> iface, MethodHandle handle, Class<?> param) throws Throwable {
+            Class<?> erased = param.isPrimitive() ? param : Object.class;
+            return LambdaMetafactory.metafactory(lookup, "accept",
+                    MethodType.methodType(iface),
+                    MethodType.methodType(void.class, Object.class, erased),
+                    handle,
+                    MethodType.methodType(void.class, type, param))
+                    .getTarget()
+                    .invoke();
+        }
+
+    }
+
+}
@@ -10,15 +10,20 @@ import com.slenergy.gateway.docker.DockerExecutor;
 import com.slenergy.gateway.docker.config.ContainerStartInfo;
 import com.slenergy.gateway.ems.Power;
 import io.vertx.core.json.JsonObject;
+import lombok.AccessLevel;
 import lombok.AllArgsConstructor;
 import lombok.Data;
 import lombok.EqualsAndHashCode;
+import lombok.Getter;
 import lombok.NoArgsConstructor;
 
+import java.lang.invoke.MethodHandles;
 import java.sql.SQLException;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
 
 /**
  * class RealTimeDevice description
@@ -36,9 +41,34 @@ import java.util.concurrent.TimeUnit;
 public abstract class RealTimeDevice extends Device implements ChangeAttribute {
 
     private long timestamp;
+    protected final static double THRESHOLD = 0.00000001;
+    /**
+     * 本次启动的第一个版本号, 由启动时间生成, 每毫秒留出2^20个版本号,
+     * 重启之后的版本号总是大于重启之前客户端拿到的版本号
+     */
+    private final static long BOOT_VERSION = System.currentTimeMillis() << 20;
+    /**
+     * 所有设备共享的版本号序列
+     */
+    private final static AtomicLong VERSIONS = new AtomicLong(BOOT_VERSION);
+    /**
+     * 数据版本号, 创建时以及每次setAttribute和setTimestamp时取全局序列的下一个值,
+     * 用于判断缓存的序列化结果是否还能使用, 以及增量查询时判断设备在某个版本之后是否有变化
+     */
+    @EqualsAndHashCode.Exclude
+    private final AtomicLong version = new AtomicLong(VERSIONS.incrementAndGet());
+    /**
+     * 设备第一次超过interval分钟没有上报时的版本号, interval -> 版本号, 设备再次上报时清空
+     * 增量查询只返回since之后才过期的设备
+     */
+    @EqualsAndHashCode.Exclude
+    @Getter(AccessLevel.NONE)
+    private final Map<Integer, Long> staleVersions = new ConcurrentHashMap<>();
     protected String sqlAddress;
     protected SQLiteConnection conn;
-    protected final static double THRESHOLD = 0.00000001;
+    protected final static AttributeTable<RealTimeDevice> SETTERS = AttributeTable.builder(RealTimeDevice.class, MethodHandles.lookup())
+            .properties("timestamp")
+            .build();
 
     public RealTimeDevice(String sqlAddress) {
         this.sqlAddress = sqlAddress;
@@ -108,8 +138,63 @@ public abstract class RealTimeDevice extends Device implements ChangeAttribute {
     }
 
     public void setAttribute(String key, Object value) {
-        if (key.compareTo("timestamp") == 0)
-            timestamp = (long) value;
+        SETTERS.apply(this, key, value);
+        touch();
+    }
+
+    public void setTimestamp(long timestamp) {
+        this.timestamp = timestamp;
+        staleVersions.clear();
+        touch();
+    }
+
+    @Override
+    public void setPvPriority(int pvPriority) {
+        super.setPvPriority(pvPriority);
+        touch();
+    }
+
+    public long getVersion() {
+        return version.get();
+    }
+
+    /**
+     * @param interval 分钟
+     * @return 是否超过interval分钟没有上报
+     */
+    public boolean isStale(int interval) {
+        return System.currentTimeMillis() - timestamp > interval * 60000L;
+    }
+
+    /**
+     * 第一次调用时取全局序列的下一个值, 之后返回同一个值, 直到设备再次上报
+     * @param interval 分钟
+     * @return 设备超过interval分钟没有上报时的版本号
+     */
+    public long staleVersion(int interval) {
+        return staleVersions.computeIfAbsent(interval, k -> VERSIONS.incrementAndGet());
+    }
+
+    /**
+     * 设备数据有变化, 缓存的序列化结果不再使用
+     */
+    protected void touch() {
+        version.set(VERSIONS.incrementAndGet());
+    }
+
+    /**
+     * @return 所有设备中最大的版本号
+     */
+    public static long currentVersion() {
+        return VERSIONS.get();
+    }
+
+    /**
+     * @param version 客户端拿到的版本号
+     * @return 是否是本次启动之后的版本号, 不是时客户端需要全部数据
+     */
+    public static boolean isCurrentBoot(long version) {
+        return version >= BOOT_VERSION && version <= VERSIONS.get();
     }
 
     public long tsToSecond() {
@@ -1,5 +1,6 @@
 package com.slenergy.gateway.api.server.device.chargingPile;
 
+import com.slenergy.gateway.api.server.device.AttributeTable;
 import com.slenergy.gateway.api.server.device.RealTimeDevice;
 import com.slenergy.gateway.ems.Power;
 import io.vertx.core.json.JsonObject;
@@ -11,6 +12,7 @@ import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
 
 import java.io.IOException;
+import java.lang.invoke.MethodHandles;
 import java.sql.SQLException;
 import java.util.ArrayList;
 import java.util.List;
@@ -50,6 +52,12 @@ public class ChargingPile extends RealTimeDevice {
     private String chargingAvailability;
     private ChargingProfile chargingProfile;
     private final static Logger LOGGER = LogManager.getLogger(ChargingPile.class);
+    private final static AttributeTable<ChargingPile> SETTERS = AttributeTable.builder(ChargingPile.class, MethodHandles.lookup())
+            .inherit(RealTimeDevice.SETTERS)
+            .properties("numberOfConnectors", "userCurrentLimit", "voltage", "currentImport", "powerActiveImport",
+                    "energyActiveImportRegister", "lastDayEnergyActiveImportRegister", "chargePointStatus", "chargePointModel",
+                    "firmwareVersion", "chargePointVendor", "chargingAvailability", "chargingMode")
+            .build();
 
     @Getter
     private enum EnergySource {
@@ -156,6 +164,7 @@ public class ChargingPile extends RealTimeDevice {
         }
 
         if (result) {
+            touch();
             try {
                 conn.commitTransaction(List.of(
                         "update energyMode set strategy = ?, name = ? where energyMode.deviceId = (select id from device where serialNumber = ?);",
@@ -173,27 +182,13 @@ public class ChargingPile extends RealTimeDevice {
 
     @Override
     public void setAttribute(String key, Object value) {
-        switch (key) {
-            case "numberOfConnectors" -> numberOfConnectors = (int) value;
-            case "userCurrentLimit" -> userCurrentLimit = (int) value;
-            case "voltage" -> voltage = (double) value;
-            case "currentImport" -> currentImport = (double) value;
-            case "powerActiveImport" -> powerActiveImport = (double) value;
-            case "energyActiveImportRegister" -> energyActiveImportRegister = (double) value;
-            case "lastDayEnergyActiveImportRegister" -> setLastDayEnergyActiveImportRegister((double) value);
-            case "chargePointStatus" -> chargePointStatus = (String) value;
-            case "chargePointModel" -> setChargePointModel((String) value);
-            case "firmwareVersion" -> setFirmwareVersion((String) value);
-            case "chargePointVendor" -> setChargePointVendor((String) value);
-            case "chargingAvailability" -> setChargingAvailability((String) value);
-            case "chargingMode" -> setChargingMode((int) value);
-        }
-
-        super.setAttribute(key, value);
+        SETTERS.apply(this, key, value);
+        touch();
     }
 
     public void setChargePointModel(String chargePointModel) {
         this.chargePointModel = chargePointModel;
+        touch();
         try {
             conn.execute(getDeviceSpecificKeySql("chargePointModel"), List.of(chargePointModel, serialNumber));
         } catch (SQLException e) {}
@@ -201,6 +196,7 @@ public class ChargingPile extends RealTimeDevice {
 
     public void setFirmwareVersion(String firmwareVersion) {
         this.firmwareVersion = firmwareVersion;
+        touch();
         try {
             conn.execute(getDeviceSpecificKeySql("firmwareVersion"), List.of(firmwareVersion, serialNumber));
         } catch (SQLException e) {}
@@ -208,6 +204,7 @@ public class ChargingPile extends RealTimeDevice {
 
     public void setChargePointVendor(String chargePointVendor) {
         this.chargePointVendor = chargePointVendor;
+        touch();
         try {
             conn.execute(getDeviceSpecificKeySql("chargePointVendor"), List.of(chargePointVendor, serialNumber));
         } catch (SQLException e) {}
@@ -215,6 +212,7 @@ public class ChargingPile extends RealTimeDevice {
 
     public void setChargingAvailability(String chargingAvailability) {
         this.chargingAvailability = chargingAvailability;
+        touch();
         try {
             conn.execute(getDeviceSpecificKeySql("chargingAvailability"), List.of(chargingAvailability, serialNumber));
         } catch (SQLException e) {}
@@ -222,6 +220,7 @@ public class ChargingPile extends RealTimeDevice {
 
     public void setLastDayEnergyActiveImportRegister(double lastDayEnergyActiveImportRegister) {
         this.lastDayEnergyActiveImportRegister = lastDayEnergyActiveImportRegister;
+        touch();
         try {
             conn.execute("update lastDayTotalEnergy set value = ? where deviceId = (select id from device where serialNumber = ?);", List.of(lastDayEnergyActiveImportRegister, serialNumber));
         } catch (SQLException e) {}
@@ -312,6 +311,7 @@ public class ChargingPile extends RealTimeDevice {
             Map<String, Object> plan = param.getMap();
             for (Map.Entry<String, Object> item : plan.entrySet())
                 chargingProfile.setAttribute(item.getKey(), item.getValue());
+            touch();
             persistChargingProfile();
 
             for (String entry : param.getMap().keySet()) {
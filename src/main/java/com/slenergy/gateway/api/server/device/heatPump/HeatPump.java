@@ -1,5 +1,6 @@
 package com.slenergy.gateway.api.server.device.heatPump;
 
+import com.slenergy.gateway.api.server.device.AttributeTable;
 import com.slenergy.gateway.api.server.device.RealTimeDevice;
 import com.slenergy.gateway.ems.Power;
 import io.vertx.core.json.JsonObject;
@@ -11,6 +12,7 @@ import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
 
 import java.io.IOException;
+import java.lang.invoke.MethodHandles;
 import java.sql.SQLException;
 import java.util.ArrayList;
 import java.util.List;
@@ -69,6 +71,20 @@ public class HeatPump extends RealTimeDevice {
     private String connectMode;
     private String model;
     private final static Logger LOGGER = LogManager.getLogger(HeatPump.class);
+    private final static AttributeTable<HeatPump> SETTERS = AttributeTable.builder(HeatPump.class, MethodHandles.lookup())
+            .inherit(RealTimeDevice.SETTERS)
+            .properties("operatingMode", "waterPump", "pressFaultCode", "hpPressOperatingStatus", "controlMode",
+                    "hotWaterMode", "airConditioningMode", "underfloorHeatingMode", "tankElectricallyHeatedMode",
+                    "ratedPower", "currentPower", "currentTemperature", "energyActiveImportRegister", "airConditioningTemperature",
+                    "dhwTankTemperature", "hpOperationStatus", "indoorTemperature", "indoorTemperatureSetting", "refrigerationTemperatureSetting",
+                    "eletricallyHeated1", "eletricallyHeated2", "tankElectricallyHeatedTemperature", "hotWaterTemperatureSetting",
+                    "tankElectricallyHeated", "heatingTemperatureSetting", "underfloorHeatingTemperature", "underfloorTemperatureSetting",
+                    "energyMode", "model")
+            .property("lastDayEnergyActiveImportRegister", "setTodayEnergyActiveImportRegister")
+            .property("environmentTemperature", "setEnvirmentTemperature")
+            // 上报的连接方式只更新内存, setConnectMode会写数据库
+            .put("connectMode", (t, v) -> t.connectMode = (String) v)
+            .build();
 
     @Getter
     private enum EnergySource {
@@ -154,6 +170,7 @@ public class HeatPump extends RealTimeDevice {
         };
 
         if (result) {
+            touch();
             try {
                 conn.commitTransaction(List.of(
                         "update energyMode set strategy = ?, name = ? where energyMode.deviceId = (select id from device where serialNumber = ?);",
@@ -245,46 +262,13 @@ public class HeatPump extends RealTimeDevice {
 
     @Override
     public void setAttribute(String key, Object value) {
-        switch (key) {
-            case "operatingMode" -> operatingMode = (int) value;
-            case "waterPump" -> waterPump = (int) value;
-            case "pressFaultCode" -> pressFaultCode = (int) value;
-            case "hpPressOperatingStatus" -> hpPressOperatingStatus = (int) value;
-            case "controlMode" -> controlMode = (int) value;
-            case "hotWaterMode" -> setHotWaterMode((int) value);
-            case "airConditioningMode" -> setAirConditioningMode((int) value);
-            case "underfloorHeatingMode" -> setUnderfloorHeatingMode((int) value);
-            case "tankElectricallyHeatedMode" -> setTankElectricallyHeatedMode((int) value);
-            case "ratedPower" -> ratedPower = (double) value;
-            case "currentPower" -> currentPower = (double) value;
-            case "currentTemperature" -> currentTemperature = (double) value;
-            case "energyActiveImportRegister" -> energyActiveImportRegister = (double) value;
-            case "lastDayEnergyActiveImportRegister" -> todayEnergyActiveImportRegister = (double) value;
-            case "airConditioningTemperature" -> airConditioningTemperature = (double)  value;
-            case "dhwTankTemperature" -> dhwTankTemperature = (double) value;
-            case "hpOperationStatus" -> hpOperationStatus = (int) value;
-            case "environmentTemperature" -> envirmentTemperature = (double)  value;
-            case "indoorTemperature" -> indoorTemperature = (double) value;
-            case "indoorTemperatureSetting" -> indoorTemperatureSetting = (double) value;
-            case "refrigerationTemperatureSetting" -> refrigerationTemperatureSetting = (int) value;
-            case "eletricallyHeated1" -> eletricallyHeated1 = (int) value;
-            case "eletricallyHeated2" -> eletricallyHeated2 = (int) value;
-            case "tankElectricallyHeatedTemperature" -> tankElectricallyHeatedTemperature = (int) value;
-            case "hotWaterTemperatureSetting" -> hotWaterTemperatureSetting = (int) value;
-            case "tankElectricallyHeated" -> tankElectricallyHeated = (int) value;
-            case "heatingTemperatureSetting" -> heatingTemperatureSetting = (int) value;
-            case "underfloorHeatingTemperature" -> underfloorHeatingTemperature = (double) value;
-            case "underfloorTemperatureSetting" -> underfloorTemperatureSetting = (int) value;
-            case "connectMode" -> connectMode = (String) value;
-            case "energyMode" -> setEnergyMode((int) value);
-            case "model" -> setModel((String) value);
-        }
-
-        super.setAttribute(key, value);
+        SETTERS.apply(this, key, value);
+        touch();
     }
 
     public void setConnectMode(String connectMode) {
         this.connectMode = connectMode;
+        touch();
         try {
             conn.execute(getDeviceSpecificKeySql("connectMode"), List.of(connectMode, serialNumber));
         } catch (SQLException e) {}
@@ -292,6 +276,7 @@ public class HeatPump extends RealTimeDevice {
 
     public void setModel(String model) {
         this.model = model;
+        touch();
         try {
             conn.execute(getDeviceSpecificKeySql("model"), List.of(model, serialNumber));
         } catch (SQLException e) {}
@@ -299,6 +284,7 @@ public class HeatPump extends RealTimeDevice {
 
     public void setMaxPower(double power) {
         powerList.setMaximum(power);
+        touch();
         try {
             conn.execute("update power set max = ? where deviceId = (select id from device where serialNumber = ?);", List.of(power, serialNumber));
         } catch (SQLException e) {}
@@ -1,5 +1,6 @@
 package com.slenergy.gateway.api.server.device.inverter;
 
+import com.slenergy.gateway.api.server.device.AttributeTable;
 import com.slenergy.gateway.api.server.device.RealTimeDevice;
 import com.slenergy.gateway.ems.Power;
 import io.vertx.core.json.JsonObject;
@@ -10,6 +11,7 @@ import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
 
 import java.io.IOException;
+import java.lang.invoke.MethodHandles;
 import java.sql.SQLException;
 import java.util.List;
 
@@ -52,6 +54,23 @@ public class Battery extends RealTimeDevice {
     protected ChargePeriod chargePeriod5;
     protected ChargePeriod chargePeriod6;
     private final static Logger LOGGER = LogManager.getLogger(Battery.class);
+    private final static AttributeTable<ChargePeriod> CHARGE_PERIOD = AttributeTable.builder(ChargePeriod.class, MethodHandles.lookup())
+            .properties("chargeMode", "chargingMode", "powerLimit", "startTime", "endTime")
+            .build();
+    protected final static AttributeTable<Battery> SETTERS = AttributeTable.builder(Battery.class, MethodHandles.lookup())
+            .inherit(RealTimeDevice.SETTERS)
+            .properties("dischargeCurrentLimit", "dischargeCutOffVoltage", "batteryChargingCurrent", "batteryDischargeCurrent",
+                    "totalBatteryChargingCapacity", "totalBatteryDischargeCapacity", "todayBatteryChargingCapacity", "todayBatteryDischargeCapacity",
+                    "batteryVoltage", "soc", "soh", "batteryChargingPower", "batteryDischargePower", "chargeCurrentLimit", "chargeCutOffVoltage",
+                    "chargePeriodEnabled", "chargePeriod1", "chargePeriod2", "chargePeriod3", "chargePeriod4", "chargePeriod5", "chargePeriod6")
+            .put("periodEnabledFlag", (t, v) -> t.chargePeriodEnabled.setPeriodEnabledFlag(AttributeTable.toInt(v)))
+            .delegate("chargePeriod1", CHARGE_PERIOD, t -> t.chargePeriod1)
+            .delegate("chargePeriod2", CHARGE_PERIOD, t -> t.chargePeriod2)
+            .delegate("chargePeriod3", CHARGE_PERIOD, t -> t.chargePeriod3)
+            .delegate("chargePeriod4", CHARGE_PERIOD, t -> t.chargePeriod4)
+            .delegate("chargePeriod5", CHARGE_PERIOD, t -> t.chargePeriod5)
+            .delegate("chargePeriod6", CHARGE_PERIOD, t -> t.chargePeriod6)
+            .build();
 
     public Battery(String sqlAddress) {
         super(sqlAddress);
@@ -82,67 +101,13 @@ public class Battery extends RealTimeDevice {
 
     @Override
     public void setAttribute(String key, Object value) {
-        switch (key) {
-            case "dischargeCurrentLimit" -> dischargeCurrentLimit = (double) value;
-            case "dischargeCutOffVoltage" -> dischargeCutOffVoltage = (double) value;
-            case "batteryChargingCurrent" -> batteryChargingCurrent = (double) value;
-            case "batteryDischargeCurrent" -> batteryDischargeCurrent = (double) value;
-            case "totalBatteryChargingCapacity" -> totalBatteryChargingCapacity = (double) value;
-            case "totalBatteryDischargeCapacity" -> totalBatteryDischargeCapacity = (double) value;
-            case "todayBatteryChargingCapacity" -> todayBatteryChargingCapacity = (double) value;
-            case "todayBatteryDischargeCapacity" -> todayBatteryDischargeCapacity = (double) value;
-            case "batteryVoltage" -> batteryVoltage = (double) value;
-            case "soc" -> soc = (double) value;
-            case "soh" -> soh = (double) value;
-            case "batteryChargingPower" -> batteryChargingPower = (double) value;
-            case "batteryDischargePower" -> batteryDischargePower = (double) value;
-            case "chargeCurrentLimit" -> chargeCurrentLimit = (double) value;
-            case "chargeCutOffVoltage" -> chargeCutOffVoltage = (double) value;
-            case "chargePeriodEnabled" -> chargePeriodEnabled = (ChargePeriodEnabled) value;
-            case "periodEnabledFlag" -> chargePeriodEnabled.setPeriodEnabledFlag((int) value);
-            case "chargePeriod1" -> chargePeriod1 = (ChargePeriod) value;
-            case "chargePeriod1chargeMode" -> chargePeriod1.setChargeMode((int) value);
-            case "chargePeriod1chargingMode" -> chargePeriod1.setChargingMode((int) value);
-            case "chargePeriod1powerLimit" -> chargePeriod1.setPowerLimit((double) value);
-            case "chargePeriod1startTime" -> chargePeriod1.setStartTime((int) value);
-            case "chargePeriod1endTime" -> chargePeriod1.setEndTime((int) value);
-            case "chargePeriod2" -> chargePeriod2 = (ChargePeriod) value;
-            case "chargePeriod2chargeMode" -> chargePeriod2.setChargeMode((int) value);
-            case "chargePeriod2chargingMode" -> chargePeriod2.setChargingMode((int) value);
-            case "chargePeriod2powerLimit" -> chargePeriod2.setPowerLimit((double) value);
-            case "chargePeriod2startTime" -> chargePeriod2.setStartTime((int) value);
-            case "chargePeriod2endTime" -> chargePeriod2.setEndTime((int) value);
-            case "chargePeriod3" -> chargePeriod3 = (ChargePeriod) value;
-            case "chargePeriod3chargeMode" -> chargePeriod3.setChargeMode((int) value);
-            case "chargePeriod3chargingMode" -> chargePeriod3.setChargingMode((int) value);
-            case "chargePeriod3powerLimit" -> chargePeriod3.setPowerLimit((double) value);
-            case "chargePeriod3startTime" -> chargePeriod3.setStartTime((int) value);
-            case "chargePeriod3eendTime" -> chargePeriod3.setEndTime((int) value);
-            case "chargePeriod4" -> chargePeriod4 = (ChargePeriod) value;
-            case "chargePeriod4chargeMode" -> chargePeriod4.setChargeMode((int) value);
-            case "chargePeriod4chargingMode" -> chargePeriod4.setChargingMode((int) value);
-            case "chargePeriod4powerLimit" -> chargePeriod4.setPowerLimit((double) value);
-            case "chargePeriod4startTime" -> chargePeriod4.setStartTime((int) value);
-            case "chargePeriod4endTime" -> chargePeriod4.setEndTime((int) value);
-            case "chargePeriod5" -> chargePeriod5 = (ChargePeriod) value;
-            case "chargePeriod5chargeMode" -> chargePeriod5.setChargeMode((int) value);
-            case "chargePeriod5chargingMode" -> chargePeriod5.setChargingMode((int) value);
-            case "chargePeriod5powerLimit" -> chargePeriod5.setPowerLimit((double) value);
-            case "chargePeriod5startTime" -> chargePeriod5.setStartTime((int) value);
-            case "chargePeriod5endTime" -> chargePeriod5.setEndTime((int) value);
-            case "chargePeriod6" -> chargePeriod6 = (ChargePeriod) value;
-            case "chargePeriod6chargeMode" -> chargePeriod6.setChargeMode((int) value);
-            case "chargePeriod6chargingMode" -> chargePeriod6.setChargingMode((int) value);
-            case "chargePeriod6powerLimit" -> chargePeriod6.setPowerLimit((double) value);
-            case "chargePeriod6startTime" -> chargePeriod6.setStartTime((int) value);
-            case "chargePeriod6endTime" -> chargePeriod6.setEndTime((int) value);
-        }
-
-        super.setAttribute(key, value);
+        SETTERS.apply(this, key, value);
+        touch();
     }
 
     public void setMaxPower(double power) {
         powerList.setMaximum(power);
+        touch();
         try {
             conn.execute("update power set max = ? where deviceId = (select id from device where serialNumber = ?);", List.of(power, serialNumber));
         } catch (SQLException e) {}
@@ -1,5 +1,6 @@
 package com.slenergy.gateway.api.server.device.inverter;
 
+import com.slenergy.gateway.api.server.device.AttributeTable;
 import com.slenergy.gateway.api.server.device.RealTimeDevice;
 import com.slenergy.gateway.api.server.device.toJson;
 import com.slenergy.gateway.ems.Power;
@@ -11,6 +12,7 @@ import lombok.EqualsAndHashCode;
 import lombok.NoArgsConstructor;
 
 import java.io.IOException;
+import java.lang.invoke.MethodHandles;
 
 /**
  * class Inverter description
@@ -43,6 +45,42 @@ public class Inverter extends RealTimeDevice implements toJson {
     protected Battery batteryDevice;
     protected Pv pv1;
     protected Pv pv2;
+    private final static AttributeTable<ElectricityMeter> METER = AttributeTable.builder(ElectricityMeter.class, MethodHandles.lookup())
+            .properties("combinedActivePower", "rPower", "sPower", "tPower", "todayPositiveEnergy", "todayReverseActiveEnergy")
+            .build();
+    private final static AttributeTable<GridSide> GRID_SIDE = AttributeTable.builder(GridSide.class, MethodHandles.lookup())
+            .properties("rVoltage", "rCurrent", "rFrequency", "rActivePower",
+                    "sVoltage", "sCurrent", "sFrequency", "sActivePower",
+                    "tVoltage", "tCurrent", "tFrequency", "tActivePower")
+            .build();
+    protected final static AttributeTable<Inverter> SETTERS = AttributeTable.builder(Inverter.class, MethodHandles.lookup())
+            .inherit(RealTimeDevice.SETTERS)
+            .properties("runningState", "totalGridConnectedTime", "lastDataGridConnectedTime", "activePowerEnabled", "machineRatedPower",
+                    "todayGridConnectedPowerGeneration", "todayPowerGeneration", "pvPower", "activePowerPercentageSetting",
+                    "pv1", "pv2", "electricityMeter", "energyStorage")
+            .property("temperatureInformation", "setTemperature")
+            .property("gridSideInformation", "setGridSide")
+            .property("battery", "setBatteryDevice")
+            .put("pv1Voltage", (t, v) -> t.pv1.setVoltage(AttributeTable.toDouble(v)))
+            .put("pv1Current", (t, v) -> t.pv1.setCurrent(AttributeTable.toDouble(v)))
+            .put("pv1Power", (t, v) -> t.pv1.setPower(AttributeTable.toDouble(v)))
+            .put("pv2Voltage", (t, v) -> t.pv2.setVoltage(AttributeTable.toDouble(v)))
+            .put("pv2Current", (t, v) -> t.pv2.setCurrent(AttributeTable.toDouble(v)))
+            .put("pv2Power", (t, v) -> t.pv2.setPower(AttributeTable.toDouble(v)))
+            .put("environmentTemperature", (t, v) -> t.temperature.setEnvironmentTemperature(AttributeTable.toDouble(v)))
+            .put("offGridAcOutputInformation", (t, v) -> t.energyStorage.setOffGridAcOutput((OffGridAcOutput) v))
+            .put("offGridActivePower", (t, v) -> t.energyStorage.getOffGridAcOutput().setActivePower(AttributeTable.toDouble(v)))
+            .put("todayElectricitySoldByGrid", (t, v) -> t.energyStorage.getElectricity().setTodayElectricitySoldByGrid(AttributeTable.toDouble(v)))
+            .put("todayGridElectricityPurchase", (t, v) -> t.energyStorage.getElectricity().setTodayGridElectricityPurchase(AttributeTable.toDouble(v)))
+            .put("todayEnergyUsed", (t, v) -> t.energyStorage.getElectricity().setTodayEnergyUsed(AttributeTable.toDouble(v)))
+            //这里是因为老王和蔡工协商，电表测量值和电网侧值相同
+            .put("gridSideActivePower", (t, v) -> t.gridSide.setActivePower(t.electricityMeter.getCombinedActivePower()))
+            // 逆变器上报的电池放电电流字段名和电池不一致
+            .put("batteryDischargingCurrent", (t, v) -> t.batteryDevice.setBatteryDischargeCurrent(AttributeTable.toDouble(v)))
+            .delegate(METER, t -> t.electricityMeter)
+            .delegate(GRID_SIDE, t -> t.gridSide)
+            .delegate(Battery.SETTERS, t -> t.batteryDevice)
+            .build();
 
     public Inverter(String sqlAddress) {
         super(sqlAddress);
@@ -68,167 +106,8 @@ public class Inverter extends RealTimeDevice implements toJson {
 
     @Override
     public void setAttribute(String key, Object value) {
-        switch (key) {
-            case "runningState":
-                runningState = (int) value;
-                break;
-            case "totalGridConnectedTime":
-                totalGridConnectedTime = (int) value;
-                break;
-            case "lastDataGridConnectedTime":
-                lastDataGridConnectedTime = (int) value;
-                break;
-            case "activePowerEnabled":
-                activePowerEnabled = (int) value;
-                break;
-            case "machineRatedPower":
-                machineRatedPower = (int) value;
-            case "todayGridConnectedPowerGeneration":
-                todayGridConnectedPowerGeneration = (double) value;
-                break;
-            case "todayPowerGeneration":
-                todayPowerGeneration = (double) value;
-                break;
-            case "pvPower":
-                pvPower = (double) value;
-                break;
-            case "pv1":
-                pv1 = (Pv) value;
-                break;
-            case "pv1Voltage":
-                pv1.setVoltage((double) value);
-                break;
-            case "pv1Current":
-                pv1.setCurrent((double) value);
-                break;
-            case "pv1Power":
-                pv1.setPower((double) value);
-                break;
-            case "pv2":
-                pv2 = (Pv) value;
-                break;
-            case "pv2Voltage":
-                pv2.setVoltage((double) value);
-                break;
-            case "pv2Current":
-                pv2.setCurrent((double) value);
-                break;
-            case "pv2Power":
-                pv2.setPower((double) value);
-                break;
-            case "activePowerPercentageSetting":
-                activePowerPercentageSetting = (double) value;
-                break;
-            case "temperatureInformation":
-                temperature = (Temperature) value;
-                break;
-            case "environmentTemperature":
-                temperature.setEnvironmentTemperature((double) value);
-                break;
-            case "electricityMeter":
-                electricityMeter = (ElectricityMeter) value;
-                break;
-            case "combinedActivePower":
-            case "rPower":
-            case "sPower":
-            case "tPower":
-            case "todayPositiveEnergy":
-            case "todayReverseActiveEnergy":
-                electricityMeter.setAttribute(key, value);
-                break;
-            case "energyStorage":
-                energyStorage = (EnergyStorage) value;
-                break;
-            case "offGridAcOutputInformation":
-                energyStorage.setOffGridAcOutput((OffGridAcOutput) value);
-                break;
-            case "offGridActivePower":
-            case "todayElectricitySoldByGrid":
-            case "todayGridElectricityPurchase":
-            case "todayEnergyUsed":
-                energyStorage.setAttribute(key, value);
-                break;
-            case "gridSideInformation":
-                gridSide = (GridSide) value;
-                break;
-            case "rVoltage":
-            case "rCurrent":
-            case "rFrequency":
-            case "rActivePower":
-            case "sVoltage":
-            case "sCurrent":
-            case "sFrequency":
-            case "sActivePower":
-            case "tVoltage":
-            case "tCurrent":
-            case "tFrequency":
-            case "tActivePower":
-                gridSide.setAttribute(key, value);
-                break;
-            case "gridSideActivePower":
-                gridSide.setAttribute(key, electricityMeter.getCombinedActivePower());
-//                gridSide.setActivePower(electricityMeter.getCombinedActivePower());      //这里是因为老王和蔡工协商，电表测量值和电网侧值相同
-                break;
-            case "battery":
-                batteryDevice = (Battery) value;
-                break;
-            case "soc":
-            case "soh":
-            case "batteryVoltage":
-            case "batteryChargingCurrent":
-            case "batteryDischargingCurrent":
-            case "batteryChargingPower":
-            case "batteryDischargePower":
-            case "chargeCutOffVoltage":
-            case "dischargeCutOffVoltage":
-            case "chargeCurrentLimit":
-            case "dischargeCurrentLimit":
-            case "todayBatteryChargingCapacity":
-            case "todayBatteryDischargeCapacity":
-            case "totalBatteryChargingCapacity":
-            case "totalBatteryDischargeCapacity":
-            case "chargePeriodEnabled":
-            case "periodEnabledFlag":
-            case "chargePeriod1":
-            case "chargePeriod1chargeMode":
-            case "chargePeriod1chargingMode":
-            case "chargePeriod1powerLimit":
-            case "chargePeriod1startTime":
-            case "chargePeriod1endTime":
-            case "chargePeriod2":
-            case "chargePeriod2chargeMode":
-            case "chargePeriod2chargingMode":
-            case "chargePeriod2powerLimit":
-            case "chargePeriod2startTime":
-            case "chargePeriod2endTime":
-            case "chargePeriod3":
-            case "chargePeriod3chargeMode":
-            case "chargePeriod3chargingMode":
-            case "chargePeriod3powerLimit":
-            case "chargePeriod3startTime":
-            case "chargePeriod3eendTime":
-            case "chargePeriod4":
-            case "chargePeriod4chargeMode":
-            case "chargePeriod4chargingMode":
-            case "chargePeriod4powerLimit":
-            case "chargePeriod4startTime":
-            case "chargePeriod4endTime":
-            case "chargePeriod5":
-            case "chargePeriod5chargeModl":
-            case "chargePeriod5chargingMode":
-            case "chargePeriod5powerLimit":
-            case "chargePeriod5startTime":
-            case "chargePeriod5endTime":
-            case "chargePeriod6":
-            case "chargePeriod6chargeMode":
-            case "chargePeriod6chargingMode":
-            case "chargePeriod6powerLimit":
-            case "chargePeriod6startTime":
-            case "chargePeriod6endTime":
-                batteryDevice.setAttribute(key, value);
-        }
-
-        super.setAttribute(key, value);
+        SETTERS.apply(this, key, value);
+        touch();
     }
 
     @Override
@@ -285,6 +164,8 @@ public class Inverter extends RealTimeDevice implements toJson {
             JsonObject batteryResult = batteryDevice.command(new JsonObject().put("maxBatteryPower", param.getInteger("maxBatteryPower")));
             param.remove("maxBatteryPower");
             result.mergeIn(batteryResult);
+            // 静态数据中包含电池的最大功率
+            touch();
         }
 
         // 指令下发处理
@@ -1,5 +1,6 @@
 package com.slenergy.gateway.api.server.device.inverter;
 
+import com.slenergy.gateway.api.server.device.AttributeTable;
 import com.slenergy.gateway.ems.Power;
 import io.vertx.core.json.JsonObject;
 import lombok.Data;
@@ -9,6 +10,7 @@ import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
 
 import java.io.IOException;
+import java.lang.invoke.MethodHandles;
 import java.util.List;
 import java.util.Map;
 
@@ -27,6 +29,14 @@ import java.util.Map;
 public class SolintegInverter extends Inverter {
 
     private final static Logger LOGGER = LogManager.getLogger(SolintegInverter.class);
+    /**
+     * 功率类的属性上报单位是kW, 设置之前换算成W
+     */
+    private final static AttributeTable<SolintegInverter> SETTERS = AttributeTable.builder(SolintegInverter.class, MethodHandles.lookup())
+            .inherit(Inverter.SETTERS)
+            .scale(1000.0, "rPower", "sPower", "tPower", "combinedActivePower", "pvPower", "pv1Power", "pv2Power", "offGridActivePower",
+                    "rActivePower", "sActivePower", "tActivePower", "batteryDischargePower", "batteryChargingPower")
+            .build();
 
     public SolintegInverter(String sqlAddress) {
         super(sqlAddress);
@@ -38,24 +48,8 @@ public class SolintegInverter extends Inverter {
 
     @Override
     public void setAttribute(String key, Object value) {
-        super.setAttribute(key, value);
-
-        switch (key) {
-            case "rPower" -> electricityMeter.setRPower(electricityMeter.getRPower() * 1000.0);
-            case "sPower" -> electricityMeter.setSPower(electricityMeter.getSPower() * 1000.0);
-            case "tPower" -> electricityMeter.setTPower(electricityMeter.getTPower() * 1000.0);
-            case "combinedActivePower" -> electricityMeter.setCombinedActivePower(electricityMeter.getCombinedActivePower() * 1000.0);
-//            case "gridSideActivePower" -> gridSide.setActivePower(gridSide.getActivePower() * 1000.0);
-            case "pvPower" -> pvPower *= 1000.0;
-            case "pv1Power" -> pv1.setPower(pv1.getPower() * 1000.0);
-            case "pv2Power" -> pv2.setPower(pv2.getPower() * 1000.0);
-            case "offGridActivePower" -> energyStorage.getOffGridAcOutput().setActivePower(energyStorage.getOffGridAcOutput().getActivePower() * 1000.0);
-            case "rActivePower" -> gridSide.setRActivePower(gridSide.getRActivePower() * 1000.0);
-            case "sActivePower" -> gridSide.setSActivePower(gridSide.getSActivePower() * 1000.0);
-            case "tActivePower" -> gridSide.setTActivePower(gridSide.getTActivePower() * 1000.0);
-            case "batteryDischargePower" -> batteryDevice.setBatteryDischargePower(batteryDevice.getBatteryDischargePower() * 1000.0);
-            case "batteryChargingPower" -> batteryDevice.setBatteryChargingPower(batteryDevice.getBatteryChargingPower() * 1000.0);
-        }
+        SETTERS.apply(this, key, value);
+        touch();
     }
 
     @Override
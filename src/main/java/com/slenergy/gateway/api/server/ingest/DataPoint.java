@@ -0,0 +1,37 @@
+package com.slenergy.gateway.api.server.ingest;
+
+import com.slenergy.gateway.database.influxdb.Piece;
+
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * {@code record} {@code DataPoint} description
+ * 等待写入实时数据库的数据点, 时间戳统一使用纳秒, 方便不同精度的数据合并成同一批写入
+ * 表名和标签来自按设备缓存的{@link PointTemplate}, 每个数据点只保存数据和时间戳
+ *
+ * @param template 表名和标签的模板
+ * @param fields 数据
+ * @param timestamp 纳秒时间戳
+ *
+ * @author Eric Li
+ * @version 1.0
+ *
+ * @since 2026-10-18
+ * @since 1.0
+ */
+public record DataPoint(PointTemplate template, Map<String, Object> fields, long timestamp) {
+
+    public String measurement() {
+        return template.measurement();
+    }
+
+    public Map<String, String> tags() {
+        return template.tags();
+    }
+
+    public Piece toPiece() {
+        return new Piece(template.measurement(), timestamp, TimeUnit.NANOSECONDS, template.tags(), fields);
+    }
+
+}
@@ -0,0 +1,273 @@
+package com.slenergy.gateway.api.server.ingest;
+
+import io.vertx.core.json.JsonArray;
+import io.vertx.core.json.JsonObject;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * class DeadbandFilter description
+ * 写入实时数据库之前的死区过滤, 按(设备, tag, subTag, 字段)记录最后写入的值,
+ * 值没有变化或者变化在死区之内时不再写入, 超过心跳间隔时强制写入一次
+ * 只过滤写入实时数据库的数据, 设备的实时状态仍然每次都更新
+ * 新的值在一次请求中先暂存, 数据点放入写入缓冲区之后才{@link Filter#commit()}, 被拒绝时{@link Filter#rollback()},
+ * 客户端重试时同样的值不会因为已经记录过而被过滤掉
+ * EMS设备(除湿机, bms, pcs等)默认不过滤, 这些设备的数据在没有最新值缓存时从实时数据库的最新一行读取, 需要每行都是完整的
+ *
+ * <p>
+ * <pre>{@code
+ * PointEncoder encoder = new PointEncoder();
+ * DeadbandFilter.Filter deadband = DeadbandFilter.getInstance().wrap(encoder);
+ * IngestListener.compose(new DeviceUpdater(), deadband).accept(data);
+ * if (InfluxWriter.getInstance().offer(encoder.takePoints()))
+ *     deadband.commit();
+ * else
+ *     deadband.rollback();
+ * }</pre>
+ * </p>
+ *
+ * @author Eric Li
+ * @version 1.0
+ *
+ * @since 2026-10-18
+ * @since 1.0
+ */
+public final class DeadbandFilter {
+
+    private final static Logger LOGGER = LogManager.getLogger(DeadbandFilter.class);
+    private static DeadbandFilter INSTANCE = null;
+    /**
+     * 默认不过滤的设备类型, 即/data/realtime/read/ems/device查询的设备类型
+     */
+    private final static List<String> EMS_DEVICE_TYPES = List.of("dehumidifier", "bms", "bms_monomer", "IOmodule", "liquidCooling", "pcs", "beidou", "AirConditioner");
+
+    private final Map<String, DeviceState> devices;
+    private final LongAdder passed;
+    private final LongAdder suppressed;
+    private boolean enabled;
+    private double absolute;
+    private double relative;
+    private long heartbeat;
+    private int maxDevices;
+    private Set<String> exclude;
+
+    public static synchronized DeadbandFilter getInstance() {
+        if (INSTANCE == null) {
+            INSTANCE = new DeadbandFilter();
+        }
+
+        return INSTANCE;
+    }
+
+    private DeadbandFilter() {
+        devices = new ConcurrentHashMap<>();
+        passed = new LongAdder();
+        suppressed = new LongAdder();
+        initialize(null);
+    }
+
+    /**
+     *
+     * @param options 过滤配置, enabled: 是否开启, absolute: 绝对死区, relative: 相对死区(相对上次写入值的比例),
+     *                heartbeat: 心跳间隔(秒), maxDevices: 记录最后写入值的设备数量上限, exclude: 不过滤的设备类型
+     */
+    public synchronized void initialize(JsonObject options) {
+        JsonObject opts = options == null ? new JsonObject() : options;
+        enabled = opts.getBoolean("enabled", false);
+        absolute = opts.getDouble("absolute", 0.0);
+        relative = opts.getDouble("relative", 0.0);
+        heartbeat = TimeUnit.SECONDS.toNanos(opts.getLong("heartbeat", 300L));
+        maxDevices = opts.getInteger("maxDevices", 4096);
+        exclude = Set.copyOf(opts.getJsonArray("exclude", new JsonArray(EMS_DEVICE_TYPES)).stream().map(String::valueOf).toList());
+        devices.clear();
+        if (enabled)
+            LOGGER.info("死区过滤开启, absolute: {}, relative: {}, heartbeat: {}s", absolute, relative, TimeUnit.NANOSECONDS.toSeconds(heartbeat));
+    }
+
+    /**
+     * 包装一个回调, 被过滤掉的字段不会传给被包装的回调
+     * @param listener 被包装的回调, 一般是{@link PointEncoder}
+     * @return 过滤回调, 没有开启时所有字段都传给被包装的回调
+     */
+    public Filter wrap(IngestListener listener) {
+        return new Filter(listener);
+    }
+
+    /**
+     * @return 写入和过滤掉的字段数量
+     */
+    public JsonObject metrics() {
+        return new JsonObject()
+                .put("enabled", enabled)
+                .put("devices", devices.size())
+                .put("passed", passed.sum())
+                .put("suppressed", suppressed.sum());
+    }
+
+    /**
+     * 一次请求的过滤回调, 同一请求中后面的上报和暂存的值比较, 实例不是线程安全的
+     */
+    public final class Filter implements IngestListener {
+
+        private final IngestListener listener;
+        /**
+         * 暂存的新值, 设备 -> 字段 -> 值
+         */
+        private final Map<DeviceState, Map<Key, LastValue>> staged;
+        /**
+         * 当前上报暂存的新值, 上报结束时才并入staged, 解析失败时丢弃
+         */
+        private final Map<Key, LastValue> record;
+        private Map<Key, LastValue> current;
+        private DeviceState state;
+        private long timestamp;
+
+        private Filter(IngestListener listener) {
+            this.listener = listener;
+            this.staged = new HashMap<>();
+            this.record = new HashMap<>();
+        }
+
+        @Override
+        public void begin(String deviceType, String serialNumber, String deviceName, long timestamp, String timeUnit) {
+            this.timestamp = PointEncoder.toNanos(timestamp, timeUnit);
+            state = !enabled || serialNumber == null || (deviceType != null && exclude.contains(deviceType)) ? null : device(serialNumber);
+            current = state == null ? null : staged.get(state);
+            record.clear();
+            listener.begin(deviceType, serialNumber, deviceName, timestamp, timeUnit);
+        }
+
+        @Override
+        public void add(String tag, String subTag, String field, Object value) {
+            if (state == null || field == null || value == null || state.pass(record, current, new Key(tag, subTag, field), value, timestamp)) {
+                if (enabled)
+                    passed.increment();
+                listener.add(tag, subTag, field, value);
+            } else {
+                suppressed.increment();
+            }
+        }
+
+        @Override
+        public void end() {
+            if (state != null && !record.isEmpty())
+                staged.computeIfAbsent(state, k -> new HashMap<>()).putAll(record);
+            state = null;
+            current = null;
+            record.clear();
+            listener.end();
+        }
+
+        @Override
+        public void abort() {
+            state = null;
+            current = null;
+            record.clear();
+            listener.abort();
+        }
+
+        /**
+         * 暂存的值对应的数据点已经放入写入缓冲区, 记录为最后写入的值
+         */
+        public void commit() {
+            staged.forEach(DeviceState::commit);
+            staged.clear();
+        }
+
+        /**
+         * 数据点没有放入写入缓冲区, 丢弃暂存的值, 重试时重新判断
+         */
+        public void rollback() {
+            staged.clear();
+        }
+
+    }
+
+    private DeviceState device(String serialNumber) {
+        DeviceState state = devices.get(serialNumber);
+        if (state != null)
+            return state;
+
+        if (devices.size() >= maxDevices)
+            devices.clear();
+
+        return devices.computeIfAbsent(serialNumber, sn -> new DeviceState());
+    }
+
+    private record Key(String tag, String subTag, String field) {}
+
+    private static final class LastValue {
+
+        private final Object value;
+        private final long timestamp;
+
+        private LastValue(Object value, long timestamp) {
+            this.value = value;
+            this.timestamp = timestamp;
+        }
+
+    }
+
+    /**
+     * 一个设备最后写入的值, 同一设备的上报可能来自不同的线程
+     */
+    private final class DeviceState {
+
+        private final Map<Key, LastValue> values = new HashMap<>();
+
+        /**
+         * @param record 当前上报暂存的值, 需要写入时暂存新值
+         * @param staged 本次请求之前的上报暂存的值, 可以为null, 优先和暂存的值比较
+         */
+        private synchronized boolean pass(Map<Key, LastValue> record, Map<Key, LastValue> staged, Key key, Object value, long timestamp) {
+            LastValue last = record.get(key);
+            if (last == null && staged != null)
+                last = staged.get(key);
+            if (last == null)
+                last = values.get(key);
+            if (last == null) {
+                record.put(key, new LastValue(value, timestamp));
+                return true;
+            }
+
+            // 补传的旧数据直接写入, 不影响最后写入的值
+            if (timestamp < last.timestamp)
+                return true;
+
+            if (timestamp - last.timestamp < heartbeat && !changed(last.value, value))
+                return false;
+
+            record.put(key, new LastValue(value, timestamp));
+            return true;
+        }
+
+        /**
+         * 记录暂存的值, 其他请求已经记录了更新的值时保留更新的值
+         */
+        private synchronized void commit(Map<Key, LastValue> staged) {
+            staged.forEach((key, value) -> values.merge(key, value, (old, v) -> v.timestamp >= old.timestamp ? v : old));
+        }
+
+        private boolean changed(Object last, Object value) {
+            if (last instanceof Number l && value instanceof Number v) {
+                double prev = l.doubleValue();
+                double diff = Math.abs(v.doubleValue() - prev);
+                double band = Math.max(absolute, relative * Math.abs(prev));
+                return band <= 0 ? diff != 0 : diff > band;
+            }
+
+            return !Objects.equals(last, value);
+        }
+
+    }
+
+}
@@ -0,0 +1,162 @@
+package com.slenergy.gateway.api.server.ingest;
+
+import com.slenergy.gateway.api.server.MessageQueue;
+import com.slenergy.gateway.api.server.device.RealTimeDevice;
+import com.slenergy.gateway.api.server.device.chargingPile.ChargingPile;
+import com.slenergy.gateway.api.server.device.heatPump.HeatPump;
+import com.slenergy.gateway.api.server.device.inverter.Inverter;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.Executor;
+import java.util.function.BiConsumer;
+
+/**
+ * class DeviceUpdater description
+ * 把上报的实时数据更新到{@link MessageQueue}中对应设备的属性
+ * 充电桩的型号, 固件版本等静态属性以及热泵的能源模式和型号会写入SQLite, 这些更新在一次上报结束后整体交给sqlite执行器, 不在事件循环线程中执行
+ * 充电桩和热泵的其他属性只更新内存, 直接在当前线程更新
+ * 一次上报的所有属性都更新之后(包括交给sqlite执行器的部分)调用完成回调, 例如推送给订阅者
+ *
+ * @author Eric Li
+ * @version 1.0
+ *
+ * @since 2026-10-18
+ * @since 1.0
+ */
+public final class DeviceUpdater implements IngestListener {
+
+    /**
+     * 热泵中setter会写入SQLite的属性
+     */
+    private final static Set<String> HEAT_PUMP_SQLITE_FIELDS = Set.of("energyMode", "model");
+    /**
+     * 充电桩中setter会写入SQLite的属性
+     */
+    private final static Set<String> CHARGING_PILE_SQLITE_FIELDS = Set.of("chargePointModel", "firmwareVersion", "chargePointVendor",
+            "chargingAvailability", "lastDayEnergyActiveImportRegister", "chargingMode");
+
+    private final Executor sqlite;
+    /**
+     * 完成回调, 参数为设备类型和设备序列号
+     */
+    private final BiConsumer<String, String> updated;
+    private String deviceType;
+    private String serialNumber;
+    private RealTimeDevice device;
+    /**
+     * 需要交给sqlite执行器的字段和值
+     */
+    private List<Object[]> deferred;
+
+    public DeviceUpdater() {
+        this(null);
+    }
+
+    /**
+     *
+     * @param sqlite 执行SQLite写入的执行器, 为空时直接在当前线程更新
+     */
+    public DeviceUpdater(Executor sqlite) {
+        this(sqlite, null);
+    }
+
+    /**
+     *
+     * @param sqlite 执行SQLite写入的执行器, 为空时直接在当前线程更新
+     * @param updated 设备的属性全部更新之后的回调, 参数为设备类型和设备序列号, 可以为空
+     */
+    public DeviceUpdater(Executor sqlite, BiConsumer<String, String> updated) {
+        this.sqlite = sqlite;
+        this.updated = updated;
+    }
+
+    @Override
+    public void begin(String deviceType, String serialNumber, String deviceName, long timestamp, String timeUnit) {
+        this.deviceType = deviceType;
+        this.serialNumber = serialNumber;
+        deferred = null;
+        device = MessageQueue.getInstance().getRealTimeDevice(serialNumber);
+        if (device != null)
+            device.setTimestamp(timestamp);
+    }
+
+    @Override
+    public void add(String tag, String subTag, String field, Object value) {
+        if (device == null || deviceType == null)
+            return;
+
+        switch (deviceType) {
+            case "inverter" -> saveInverter((Inverter) device, tag, subTag, field, value);
+            case "heatPump" -> {
+                if (sqlite == null || !HEAT_PUMP_SQLITE_FIELDS.contains(field))
+                    saveHeatPump((HeatPump) device, field, value);
+                else
+                    defer(field, value);
+            }
+            case "chargingPile" -> {
+                if (sqlite == null || !CHARGING_PILE_SQLITE_FIELDS.contains(field))
+                    saveChargingPile((ChargingPile) device, field, value);
+                else
+                    defer(field, value);
+            }
+        }
+    }
+
+    @Override
+    public void end() {
+        if (deferred != null) {
+            RealTimeDevice target = device;
+            List<Object[]> updates = deferred;
+            String type = deviceType;
+            String sn = serialNumber;
+            sqlite.execute(() -> {
+                for (Object[] update : updates)
+                    target.setAttribute((String) update[0], update[1]);
+                complete(type, sn);
+            });
+        } else if (device != null) {
+            complete(deviceType, serialNumber);
+        }
+        abort();
+    }
+
+    /**
+     * 丢弃还没有交给sqlite执行器的字段, 已经在当前线程更新的属性不会恢复
+     */
+    @Override
+    public void abort() {
+        deviceType = null;
+        serialNumber = null;
+        device = null;
+        deferred = null;
+    }
+
+    private void complete(String deviceType, String serialNumber) {
+        if (updated != null)
+            updated.accept(deviceType, serialNumber);
+    }
+
+    private void defer(String field, Object value) {
+        if (deferred == null)
+            deferred = new ArrayList<>();
+        deferred.add(new Object[] {field, value});
+    }
+
+    private void saveInverter(Inverter inverter, String tag, String subTag, String field, Object value) {
+        if ("inverterSetting".equals(tag) && subTag != null && subTag.startsWith("chargePeriod"))
+            inverter.setAttribute(subTag + field, value);
+        else
+            inverter.setAttribute(field, value);
+    }
+
+    private void saveHeatPump(HeatPump heatPump, String field, Object value) {
+        heatPump.setAttribute(field, value);
+    }
+
+    private void saveChargingPile(ChargingPile chargingPile, String field, Object value) {
+        chargingPile.setAttribute(field, value);
+    }
+
+}
@@ -0,0 +1,312 @@
+package com.slenergy.gateway.api.server.ingest;
+
+import com.slenergy.gateway.database.influxdb.InfluxConnection;
+import com.slenergy.gateway.database.influxdb.Piece;
+import io.vertx.core.json.JsonObject;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Queue;
+import java.util.Set;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
+
+/**
+ * class InfluxWriter description
+ * 实时数据批量写入器, 所有GWapi实例共享同一个有界缓冲区,
+ * 由单独的线程按数量或时间触发批量写入实时数据库, HTTP请求只负责把数据放入缓冲区
+ * 实时数据库不可用时数据写入磁盘缓存, 重新ping通之后按顺序限速回放
+ *
+ * @author Eric Li
+ * @version 1.0
+ *
+ * @since 2026-10-18
+ * @since 1.0
+ */
+public final class InfluxWriter {
+
+    private final static Logger LOGGER = LogManager.getLogger(InfluxWriter.class);
+    private static InfluxWriter INSTANCE = null;
+
+    private final Queue<DataPoint> buffer;
+    /**
+     * 已经放入缓冲区但还没写入的数据点数量, 用来限制缓冲区大小
+     */
+    private final AtomicInteger pending;
+    private final AtomicBoolean flushRequested;
+    private final AtomicLong written;
+    private final AtomicLong dropped;
+    private InfluxConnection connection;
+    private ScheduledExecutorService scheduler;
+    private WriteSpool spool;
+    private volatile boolean healthy;
+    /**
+     * 磁盘缓存的统计信息, 由写入线程定时更新
+     */
+    private volatile JsonObject spoolMetrics;
+    private int batchSize;
+    private int capacity;
+    /**
+     * 每秒最多回放的数据点数量
+     */
+    private int replayRate;
+    private long lastReplayed;
+    /**
+     * 数据写入实时数据库之后的回调, 参数为设备序列号
+     */
+    private volatile Consumer<String> onWritten;
+
+    public static synchronized InfluxWriter getInstance() {
+        if (INSTANCE == null) {
+            INSTANCE = new InfluxWriter();
+        }
+
+        return INSTANCE;
+    }
+
+    private InfluxWriter() {
+        buffer = new ConcurrentLinkedQueue<>();
+        pending = new AtomicInteger(0);
+        flushRequested = new AtomicBoolean(false);
+        written = new AtomicLong(0);
+        dropped = new AtomicLong(0);
+        healthy = true;
+    }
+
+    /**
+     *
+     * @param db 实时数据库配置
+     * @param options 写入配置, batchSize: 每批最大数量, flushInterval: 定时写入间隔(毫秒), capacity: 缓冲区大小,
+     *                replayRate: 每秒最多回放的数据点数量, spool: 磁盘缓存配置
+     */
+    public synchronized void initialize(JsonObject db, JsonObject options) {
+        if (scheduler != null)
+            return;
+
+        JsonObject opts = options == null ? new JsonObject() : options;
+        batchSize = opts.getInteger("batchSize", 5000);
+        capacity = opts.getInteger("capacity", batchSize * 10);
+        long flushInterval = opts.getLong("flushInterval", 200L);
+        replayRate = opts.getInteger("replayRate", batchSize);
+        connection = new InfluxConnection(db.getString("host"), db.getString("token"), db.getString("org"), db.getString("bucket"));
+        JsonObject spoolOptions = opts.getJsonObject("spool", new JsonObject());
+        if (spoolOptions.getBoolean("enabled", true)) {
+            try {
+                spool = new WriteSpool(spoolOptions);
+                spoolMetrics = spool.metrics();
+            } catch (IOException | RuntimeException e) {
+                LOGGER.warn("无法打开磁盘缓存, 实时数据库不可用时数据将被丢弃: {}", e.getMessage());
+            }
+        }
+
+        scheduler = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread t = new Thread(r, "influx-writer");
+            t.setDaemon(true);
+            return t;
+        });
+        scheduler.scheduleWithFixedDelay(() -> guard("flush", this::flush), flushInterval, flushInterval, TimeUnit.MILLISECONDS);
+        scheduler.scheduleWithFixedDelay(() -> guard("maintain", this::maintain), 1, 1, TimeUnit.SECONDS);
+        LOGGER.info("实时数据写入器启动, batchSize: {}, flushInterval: {}ms, capacity: {}", batchSize, flushInterval, capacity);
+    }
+
+    /**
+     * 一批数据写入实时数据库之后(包括回放磁盘缓存), 对其中的每个设备序列号调用一次, 在写入线程中执行
+     * @param listener 回调
+     */
+    public void onWritten(Consumer<String> listener) {
+        onWritten = listener;
+    }
+
+    /**
+     * 把数据点放入缓冲区, 缓冲区剩余空间不够时整批拒绝
+     * @param points 数据点
+     * @return 是否接收
+     */
+    public boolean offer(List<DataPoint> points) {
+        if (points.isEmpty())
+            return true;
+
+        if (pending.addAndGet(points.size()) > capacity) {
+            pending.addAndGet(-points.size());
+            return false;
+        }
+
+        buffer.addAll(points);
+        if (pending.get() >= batchSize && flushRequested.compareAndSet(false, true))
+            scheduler.execute(() -> guard("flush", this::flush));
+
+        return true;
+    }
+
+    private void flush() {
+        flushRequested.set(false);
+        List<DataPoint> batch = new ArrayList<>(Math.min(batchSize, Math.max(pending.get(), 1)));
+        DataPoint point;
+        while ((point = buffer.poll()) != null) {
+            batch.add(point);
+            if (batch.size() >= batchSize) {
+                write(batch);
+                batch = new ArrayList<>(batchSize);
+            }
+        }
+
+        if (!batch.isEmpty())
+            write(batch);
+    }
+
+    /**
+     * 定时任务抛出异常后不会再执行, 所有异常都在这里记录, 保证写入和回放一直运行
+     * @param name 任务名
+     * @param task 任务
+     */
+    private void guard(String name, Runnable task) {
+        try {
+            task.run();
+        } catch (Throwable e) {
+            LOGGER.error("实时数据写入器的{}任务出错", name, e);
+        }
+    }
+
+    private void write(List<DataPoint> batch) {
+        try {
+            if (healthy) {
+                try {
+                    insert(batch);
+                    return;
+                } catch (RuntimeException e) {
+                    healthy = false;
+                    LOGGER.warn("批量写入实时数据库失败, {}条数据写入磁盘缓存: {}", batch.size(), e.getMessage());
+                }
+            }
+            spool(batch);
+        } finally {
+            pending.addAndGet(-batch.size());
+        }
+    }
+
+    private void insert(List<DataPoint> batch) {
+        List<Piece> pieces = new ArrayList<>(batch.size());
+        for (DataPoint point : batch)
+            pieces.add(point.toPiece());
+        connection.insert(pieces, TimeUnit.NANOSECONDS);
+        written.addAndGet(batch.size());
+        notifyWritten(batch);
+    }
+
+    /**
+     * 回调出错不能当成写入失败, 否则已经写入的数据会再写入磁盘缓存
+     */
+    private void notifyWritten(List<DataPoint> batch) {
+        Consumer<String> listener = onWritten;
+        if (listener == null)
+            return;
+
+        Set<String> serialNumbers = new HashSet<>();
+        PointTemplate last = null;
+        for (DataPoint point : batch) {
+            // 同一个设备的数据点通常使用同一个模板并且连续
+            if (point.template() == last)
+                continue;
+            last = point.template();
+            String serialNumber = last.tags().get("deviceSN");
+            if (serialNumber == null || !serialNumbers.add(serialNumber))
+                continue;
+            try {
+                listener.accept(serialNumber);
+            } catch (RuntimeException e) {
+                LOGGER.warn("写入完成的回调出错: {}", e.getMessage());
+            }
+        }
+    }
+
+    private void spool(List<DataPoint> batch) {
+        try {
+            if (spool != null && spool.append(batch))
+                return;
+        } catch (RuntimeException e) {
+            LOGGER.error("写入磁盘缓存出错, 丢弃{}条数据", batch.size(), e);
+        }
+        dropped.addAndGet(batch.size());
+    }
+
+    /**
+     * 每秒执行一次, 实时数据库不可用时检查是否恢复, 可用时限速回放磁盘缓存
+     */
+    private void maintain() {
+        if (!healthy) {
+            try {
+                healthy = connection.ping();
+            } catch (RuntimeException e) {
+                LOGGER.debug("ping实时数据库失败: {}", e.getMessage());
+            }
+            if (healthy)
+                LOGGER.info("实时数据库已恢复连接");
+        }
+
+        if (spool == null)
+            return;
+
+        if (healthy)
+            replay();
+
+        long replayed = spool.replayed();
+        spoolMetrics = spool.metrics().put("replayRate", replayed - lastReplayed);
+        lastReplayed = replayed;
+    }
+
+    private void replay() {
+        int budget = replayRate;
+        List<DataPoint> batch;
+        while (budget > 0 && (batch = spool.peek()) != null) {
+            try {
+                insert(batch);
+            } catch (RuntimeException e) {
+                healthy = false;
+                LOGGER.warn("回放磁盘缓存失败: {}", e.getMessage());
+                return;
+            }
+            spool.commit();
+            budget -= batch.size();
+        }
+    }
+
+    /**
+     * @return 写入器和磁盘缓存的统计信息
+     */
+    public JsonObject metrics() {
+        return new JsonObject()
+                .put("healthy", healthy)
+                .put("pending", pending.get())
+                .put("capacity", capacity)
+                .put("written", written.get())
+                .put("dropped", dropped.get())
+                .put("spool", spoolMetrics);
+    }
+
+    public void close() {
+        if (scheduler == null)
+            return;
+
+        scheduler.shutdown();
+        try {
+            scheduler.awaitTermination(5, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        guard("flush", this::flush);
+        if (spool != null)
+            spool.close();
+        connection.close();
+    }
+
+}
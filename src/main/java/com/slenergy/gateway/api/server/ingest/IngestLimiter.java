@@ -0,0 +1,302 @@
+package com.slenergy.gateway.api.server.ingest;
+
+import io.vertx.core.json.JsonObject;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * class IngestLimiter description
+ * 实时数据写入的限流器, 所有GWapi实例共享
+ * 限制同时处理的写入请求数量, 并按设备序列号使用令牌桶限制每个设备的上报频率, 同时统计被拒绝的请求
+ * 令牌桶和按设备的拒绝统计都最多记录maxDevices个设备, 令牌桶超过上限时每秒最多清理一次空闲的桶, 统计超过上限的设备只计入总数
+ *
+ * @author Eric Li
+ * @version 1.0
+ *
+ * @since 2026-10-18
+ * @since 1.0
+ */
+public final class IngestLimiter {
+
+    private final static Logger LOGGER = LogManager.getLogger(IngestLimiter.class);
+    private static IngestLimiter INSTANCE = null;
+    /**
+     * 清理空闲令牌桶的最小间隔
+     */
+    private final static long SWEEP_INTERVAL = TimeUnit.SECONDS.toNanos(1);
+    /**
+     * metrics中列出的被限流次数最多的设备数量
+     */
+    private final static int TOP_RATE_LIMITED = 10;
+
+    private final AtomicInteger inFlight;
+    private final Map<String, TokenBucket> buckets;
+    private final Map<String, LongAdder> rateLimited;
+    /**
+     * 所有设备被限流的次数, 包括超过记录上限的设备
+     */
+    private final LongAdder rateLimitedTotal;
+    private final AtomicLong lastSweep;
+    private final LongAdder overloaded;
+    private final LongAdder bufferFull;
+    private int maxInFlight;
+    /**
+     * 每个设备每秒允许的上报次数, 以及允许的突发次数
+     */
+    private double deviceRate;
+    private double deviceBurst;
+    private int maxDevices;
+    private long retryAfter;
+
+    public static synchronized IngestLimiter getInstance() {
+        if (INSTANCE == null) {
+            INSTANCE = new IngestLimiter();
+        }
+
+        return INSTANCE;
+    }
+
+    private IngestLimiter() {
+        inFlight = new AtomicInteger(0);
+        buckets = new ConcurrentHashMap<>();
+        rateLimited = new ConcurrentHashMap<>();
+        rateLimitedTotal = new LongAdder();
+        lastSweep = new AtomicLong(System.nanoTime());
+        overloaded = new LongAdder();
+        bufferFull = new LongAdder();
+        initialize(null);
+    }
+
+    /**
+     *
+     * @param options 限流配置, maxInFlight: 同时处理的写入请求数量, deviceRate: 每个设备每秒的上报次数, deviceBurst: 每个设备的突发次数,
+     *                maxDevices: 记录令牌桶的设备数量上限, retryAfter: 服务繁忙时建议的重试间隔(秒)
+     *                重新配置时清空所有设备的令牌桶和按设备的限流统计
+     */
+    public synchronized void initialize(JsonObject options) {
+        JsonObject opts = options == null ? new JsonObject() : options;
+        double rate = opts.getDouble("deviceRate", 10.0);
+        // 令牌按deviceRate补充, 不大于0时令牌桶永远不会补满, 等待时间也无法计算
+        if (!(rate > 0))
+            throw new IllegalArgumentException("deviceRate必须大于0: " + rate);
+
+        maxInFlight = opts.getInteger("maxInFlight", 256);
+        deviceRate = rate;
+        deviceBurst = Math.max(1.0, opts.getDouble("deviceBurst", deviceRate * 2));
+        maxDevices = opts.getInteger("maxDevices", 4096);
+        retryAfter = opts.getLong("retryAfter", 1L);
+        buckets.clear();
+        rateLimited.clear();
+        LOGGER.debug("写入限流配置, maxInFlight: {}, deviceRate: {}/s, deviceBurst: {}", maxInFlight, deviceRate, deviceBurst);
+    }
+
+    /**
+     * 开始处理一个写入请求, 成功时处理结束后必须调用{@link #exit()}
+     * @return 是否允许处理
+     */
+    public boolean enter() {
+        if (inFlight.incrementAndGet() > maxInFlight) {
+            inFlight.decrementAndGet();
+            overloaded.increment();
+            return false;
+        }
+
+        return true;
+    }
+
+    public void exit() {
+        inFlight.decrementAndGet();
+    }
+
+    /**
+     * 从设备的令牌桶中取一个令牌
+     * @param serialNumber 设备序列号
+     * @return 0表示允许, 否则为建议的重试间隔(秒)
+     */
+    public long acquire(String serialNumber) {
+        return acquire(serialNumber, System.nanoTime());
+    }
+
+    /**
+     * @param now 当前时间({@link System#nanoTime()})
+     */
+    long acquire(String serialNumber, long now) {
+        if (serialNumber == null)
+            return 0;
+
+        TokenBucket bucket = buckets.get(serialNumber);
+        if (bucket == null) {
+            if (buckets.size() >= maxDevices)
+                sweep(now);
+            bucket = buckets.computeIfAbsent(serialNumber, sn -> new TokenBucket(deviceBurst, now));
+        }
+
+        long wait = bucket.acquire(now);
+        if (wait == 0)
+            return 0;
+
+        rateLimitedTotal.increment();
+        LongAdder count = rateLimited.get(serialNumber);
+        if (count == null && rateLimited.size() < maxDevices)
+            count = rateLimited.computeIfAbsent(serialNumber, sn -> new LongAdder());
+        if (count != null)
+            count.increment();
+        return Math.max(1, TimeUnit.NANOSECONDS.toSeconds(wait + TimeUnit.SECONDS.toNanos(1) - 1));
+    }
+
+    /**
+     * 清理已经补满的令牌桶, 这些设备再次上报时重新建立的桶和原来的状态相同
+     * 只有一个线程能在一个间隔内执行清理, 其他线程直接返回, 令牌桶的数量在两次清理之间可以暂时超过上限
+     */
+    private void sweep(long now) {
+        long last = lastSweep.get();
+        if (now - last < SWEEP_INTERVAL || !lastSweep.compareAndSet(last, now))
+            return;
+
+        int before = buckets.size();
+        buckets.values().removeIf(bucket -> bucket.isIdle(now));
+        LOGGER.debug("清理空闲的令牌桶, {} -> {}", before, buckets.size());
+    }
+
+    /**
+     * 记录一次写入缓冲区已满导致的拒绝
+     */
+    public void rejectBufferFull() {
+        bufferFull.increment();
+    }
+
+    /**
+     * @return 服务繁忙时建议的重试间隔(秒)
+     */
+    public long retryAfter() {
+        return retryAfter;
+    }
+
+    /**
+     * 包装一个回调, 设备超过频率限制时整次上报都不会传给被包装的回调
+     * @param listener 被包装的回调
+     * @return 限流回调
+     */
+    public Gate gate(IngestListener listener) {
+        return new Gate(listener);
+    }
+
+    /**
+     * @return 当前处理中的请求数量以及被拒绝的请求统计, 按设备的限流次数只列出最多的{@link #TOP_RATE_LIMITED}个
+     */
+    public JsonObject metrics() {
+        JsonObject devices = new JsonObject();
+        rateLimited.entrySet().stream()
+                .map(entry -> Map.entry(entry.getKey(), entry.getValue().sum()))
+                .sorted(Map.Entry.<String, Long>comparingByValue().reversed())
+                .limit(TOP_RATE_LIMITED)
+                .forEach(entry -> devices.put(entry.getKey(), entry.getValue()));
+        return new JsonObject()
+                .put("inFlight", inFlight.get())
+                .put("maxInFlight", maxInFlight)
+                .put("overloaded", overloaded.sum())
+                .put("bufferFull", bufferFull.sum())
+                .put("devices", buckets.size())
+                .put("rateLimitedTotal", rateLimitedTotal.sum())
+                .put("rateLimited", devices);
+    }
+
+    public final class Gate implements IngestListener {
+
+        private final IngestListener listener;
+        private boolean open;
+        /**
+         * 被拒绝时建议的重试间隔(秒)
+         */
+        private long retryAfter;
+
+        private Gate(IngestListener listener) {
+            this.listener = listener;
+        }
+
+        @Override
+        public void begin(String deviceType, String serialNumber, String deviceName, long timestamp, String timeUnit) {
+            long wait = acquire(serialNumber);
+            open = wait == 0;
+            retryAfter = Math.max(retryAfter, wait);
+            if (open)
+                listener.begin(deviceType, serialNumber, deviceName, timestamp, timeUnit);
+        }
+
+        @Override
+        public void add(String tag, String subTag, String field, Object value) {
+            if (open)
+                listener.add(tag, subTag, field, value);
+        }
+
+        @Override
+        public void end() {
+            if (open)
+                listener.end();
+            open = false;
+        }
+
+        @Override
+        public void abort() {
+            if (open)
+                listener.abort();
+            open = false;
+        }
+
+        /**
+         * @return 0表示没有被拒绝, 否则为建议的重试间隔(秒)
+         */
+        public long retryAfter() {
+            return retryAfter;
+        }
+
+    }
+
+    /**
+     * 令牌桶, 按时间补充令牌, 最多保存burst个
+     */
+    private final class TokenBucket {
+
+        private final double burst;
+        private double tokens;
+        private long last;
+
+        private TokenBucket(double burst, long now) {
+            this.burst = burst;
+            this.tokens = burst;
+            this.last = now;
+        }
+
+        /**
+         * @return 0表示取到令牌, 否则为需要等待的纳秒数
+         */
+        private synchronized long acquire(long now) {
+            refill(now);
+            if (tokens >= 1) {
+                tokens -= 1;
+                return 0;
+            }
+
+            return (long) Math.ceil((1 - tokens) / deviceRate * 1e9);
+        }
+
+        private synchronized boolean isIdle(long now) {
+            refill(now);
+            return tokens >= burst;
+        }
+
+        private void refill(long now) {
+            tokens = Math.min(burst, tokens + (now - last) / 1e9 * deviceRate);
+            last = now;
+        }
+
+    }
+
+}
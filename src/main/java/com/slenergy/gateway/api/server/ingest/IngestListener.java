@@ -0,0 +1,75 @@
+package com.slenergy.gateway.api.server.ingest;
+
+import com.slenergy.gateway.api.server.schema.RealTimeData;
+import com.slenergy.gateway.api.server.schema.TimeSeriesData;
+
+/**
+ * interface IngestListener description
+ * 接收一次实时数据上报的回调, 解码器每解析出一个字段就回调一次, 不需要先构建完整的{@link RealTimeData}
+ *
+ * @author Eric Li
+ * @version 1.0
+ *
+ * @since 2026-10-18
+ * @since 1.0
+ */
+public interface IngestListener {
+
+    /**
+     * 一次上报开始
+     * @param deviceType 设备类型
+     * @param serialNumber 设备序列号
+     * @param deviceName 设备名称
+     * @param timestamp 上报的时间戳
+     * @param timeUnit 时间戳单位
+     */
+    void begin(String deviceType, String serialNumber, String deviceName, long timestamp, String timeUnit);
+
+    void add(String tag, String subTag, String field, Object value);
+
+    /**
+     * 一次上报结束
+     */
+    void end();
+
+    /**
+     * 一次上报解析失败, 丢弃begin之后收到的字段, 之后不会再调用{@link #end()}
+     */
+    void abort();
+
+    default void accept(RealTimeData data) {
+        begin(data.deviceType(), data.serialNumber(), data.deviceName(), data.timestamp(), data.timeUnit());
+        for (TimeSeriesData timeseries : data.timeSeries())
+            add(timeseries.tag(), timeseries.subTag(), timeseries.field(), timeseries.value());
+        end();
+    }
+
+    static IngestListener compose(IngestListener... listeners) {
+        return new IngestListener() {
+            @Override
+            public void begin(String deviceType, String serialNumber, String deviceName, long timestamp, String timeUnit) {
+                for (IngestListener listener : listeners)
+                    listener.begin(deviceType, serialNumber, deviceName, timestamp, timeUnit);
+            }
+
+            @Override
+            public void add(String tag, String subTag, String field, Object value) {
+                for (IngestListener listener : listeners)
+                    listener.add(tag, subTag, field, value);
+            }
+
+            @Override
+            public void end() {
+                for (IngestListener listener : listeners)
+                    listener.end();
+            }
+
+            @Override
+            public void abort() {
+                for (IngestListener listener : listeners)
+                    listener.abort();
+            }
+        };
+    }
+
+}
@@ -0,0 +1,264 @@
+package com.slenergy.gateway.api.server.ingest;
+
+import io.vertx.core.json.JsonObject;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * class LatestValueStore description
+ * 每个设备类型按(设备序列号, tag, subTag)保存最后上报的字段值, 上报时由写入路由更新,
+ * 读取最新数据的路由直接从这里取, 不再每次查询实时数据库
+ * 和实时数据库中pivot之后的最新一行一致, 每次上报整体替换一行的字段, 不再上报的字段不会保留
+ * 启动以来没有收到过上报的设备类型返回null, 调用者需要回退到实时数据库查询, 例如刚启动时或者数据不经过本服务写入的设备
+ *
+ * <p>
+ * <pre>{@code
+ * IngestListener listener = IngestListener.compose(new DeviceUpdater(), LatestValueStore.getInstance().listener(), encoder);
+ * List<Map<String, Object>> rows = LatestValueStore.getInstance().query("bms", "runtimeInformation", "-30s");
+ * if (rows == null)
+ *     rows = connection.query(flux);
+ * }</pre>
+ * </p>
+ *
+ * @author Eric Li
+ * @version 1.0
+ *
+ * @since 2026-10-18
+ * @since 1.0
+ */
+public final class LatestValueStore {
+
+    private final static Logger LOGGER = LogManager.getLogger(LatestValueStore.class);
+    private static LatestValueStore INSTANCE = null;
+    /**
+     * flux中的相对时间, 例如-30s, -3m, -500ms
+     */
+    private final static Pattern RANGE = Pattern.compile("^-?(\\d+)(ns|us|ms|s|m|h|d)$");
+
+    /**
+     * 设备类型 -> (设备序列号, tag, subTag) -> 最后上报的值
+     */
+    private final Map<String, Map<RowKey, Row>> measurements;
+    private final LongAdder hits;
+    private final LongAdder misses;
+    private final LongAdder updates;
+    private boolean enabled;
+    private int maxRows;
+
+    private record RowKey(String serialNumber, String tag, String subTag) {}
+
+    /**
+     * 一组tag的最后上报值, 不可修改, 每次上报替换
+     */
+    private record Row(String tag, String subTag, String serialNumber, String deviceName, long timestamp, Map<String, Object> fields) {}
+
+    public static synchronized LatestValueStore getInstance() {
+        if (INSTANCE == null) {
+            INSTANCE = new LatestValueStore();
+        }
+
+        return INSTANCE;
+    }
+
+    private LatestValueStore() {
+        measurements = new ConcurrentHashMap<>();
+        hits = new LongAdder();
+        misses = new LongAdder();
+        updates = new LongAdder();
+        initialize(null);
+    }
+
+    /**
+     *
+     * @param options 配置, enabled: 是否开启, maxRows: 每个设备类型保存的(设备序列号, tag, subTag)数量上限
+     */
+    public synchronized void initialize(JsonObject options) {
+        JsonObject opts = options == null ? new JsonObject() : options;
+        enabled = opts.getBoolean("enabled", true);
+        maxRows = opts.getInteger("maxRows", 4096);
+        measurements.clear();
+    }
+
+    /**
+     * @return 更新最新值的回调, 每次上报使用一个新的回调
+     */
+    public IngestListener listener() {
+        if (!enabled)
+            return NOOP;
+
+        return new IngestListener() {
+            private Map<RowKey, Row> rows;
+            private String serialNumber;
+            private String deviceName;
+            private long timestamp;
+            /**
+             * 本次上报的字段, 上报结束时整体替换
+             */
+            private final Map<RowKey, Map<String, Object>> pending = new HashMap<>();
+            private RowKey lastKey;
+            private Map<String, Object> last;
+
+            @Override
+            public void begin(String deviceType, String serialNumber, String deviceName, long timestamp, String timeUnit) {
+                this.rows = deviceType == null || serialNumber == null ? null : measurements.computeIfAbsent(deviceType, k -> new ConcurrentHashMap<>());
+                this.serialNumber = serialNumber;
+                this.deviceName = deviceName;
+                this.timestamp = PointEncoder.toNanos(timestamp, timeUnit);
+                pending.clear();
+                lastKey = null;
+                last = null;
+            }
+
+            @Override
+            public void add(String tag, String subTag, String field, Object value) {
+                if (rows == null || field == null || value == null)
+                    return;
+
+                // 同一个tag的字段一般是连续上报的
+                if (lastKey == null || !Objects.equals(lastKey.tag(), tag) || !Objects.equals(lastKey.subTag(), subTag)) {
+                    lastKey = new RowKey(serialNumber, tag, subTag);
+                    last = pending.computeIfAbsent(lastKey, k -> new HashMap<>());
+                }
+                last.put(field, value);
+            }
+
+            @Override
+            public void end() {
+                if (rows != null) {
+                    pending.forEach((key, fields) -> put(rows, key, new Row(key.tag(), key.subTag(), serialNumber, deviceName, timestamp, fields)));
+                    updates.increment();
+                }
+                abort();
+            }
+
+            @Override
+            public void abort() {
+                rows = null;
+                pending.clear();
+                lastKey = null;
+                last = null;
+            }
+        };
+    }
+
+    /**
+     * 查询一个设备类型在时间范围内的最新值, 格式和实时数据库pivot之后的结果一致, 按时间倒序
+     * @param measurement 设备类型
+     * @param subTag 子标签, 为空时不过滤
+     * @param range flux格式的相对时间, 例如-30s
+     * @return 最新值, 没有收到过这个设备类型的上报时返回null
+     */
+    public List<Map<String, Object>> query(String measurement, String subTag, String range) {
+        Map<RowKey, Row> rows = enabled ? measurements.get(measurement) : null;
+        if (rows == null) {
+            misses.increment();
+            return null;
+        }
+
+        long since = TimeUnit.MILLISECONDS.toNanos(System.currentTimeMillis()) - toNanos(range);
+        List<Row> matched = new ArrayList<>();
+        for (Row row : rows.values()) {
+            if ((subTag == null || subTag.equals(row.subTag())) && row.timestamp() >= since)
+                matched.add(row);
+        }
+        matched.sort(Comparator.comparingLong(Row::timestamp).reversed());
+
+        List<Map<String, Object>> ret = new ArrayList<>(matched.size());
+        for (Row row : matched) {
+            Map<String, Object> elem = new HashMap<>(row.fields());
+            elem.put("_measurement", measurement);
+            elem.put("deviceSN", row.serialNumber());
+            if (row.deviceName() != null)
+                elem.put("deviceName", row.deviceName());
+            if (row.tag() != null)
+                elem.put("tag", row.tag());
+            if (row.subTag() != null)
+                elem.put("subTag", row.subTag());
+            ret.add(elem);
+        }
+        hits.increment();
+        return ret;
+    }
+
+    public List<Map<String, Object>> query(String measurement, String range) {
+        return query(measurement, null, range);
+    }
+
+    /**
+     * @return 保存的数据量以及命中情况
+     */
+    public JsonObject metrics() {
+        int size = 0;
+        for (Map<RowKey, Row> rows : measurements.values())
+            size += rows.size();
+
+        return new JsonObject()
+                .put("enabled", enabled)
+                .put("measurements", measurements.size())
+                .put("rows", size)
+                .put("updates", updates.sum())
+                .put("hits", hits.sum())
+                .put("misses", misses.sum());
+    }
+
+    /**
+     * 替换一行, 补传的旧数据不覆盖最新值
+     */
+    private void put(Map<RowKey, Row> rows, RowKey key, Row row) {
+        if (!rows.containsKey(key) && rows.size() >= maxRows) {
+            LOGGER.warn("最新值的数量超过上限{}, 清空后重建", maxRows);
+            rows.clear();
+        }
+
+        rows.merge(key, row, (old, current) -> current.timestamp() >= old.timestamp() ? current : old);
+    }
+
+    /**
+     * 把flux格式的相对时间转换成纳秒
+     * @param range 相对时间, 例如-30s
+     * @return 纳秒
+     */
+    public static long toNanos(String range) {
+        Matcher matcher = RANGE.matcher(range);
+        if (!matcher.matches())
+            throw new IllegalArgumentException("无法解析时间范围: " + range);
+
+        long value = Long.parseLong(matcher.group(1));
+        return switch (matcher.group(2)) {
+            case "ns" -> value;
+            case "us" -> TimeUnit.MICROSECONDS.toNanos(value);
+            case "ms" -> TimeUnit.MILLISECONDS.toNanos(value);
+            case "s" -> TimeUnit.SECONDS.toNanos(value);
+            case "m" -> TimeUnit.MINUTES.toNanos(value);
+            case "h" -> TimeUnit.HOURS.toNanos(value);
+            default -> TimeUnit.DAYS.toNanos(value);
+        };
+    }
+
+    private final static IngestListener NOOP = new IngestListener() {
+        @Override
+        public void begin(String deviceType, String serialNumber, String deviceName, long timestamp, String timeUnit) {}
+
+        @Override
+        public void add(String tag, String subTag, String field, Object value) {}
+
+        @Override
+        public void end() {}
+
+        @Override
+        public void abort() {}
+    };
+
+}
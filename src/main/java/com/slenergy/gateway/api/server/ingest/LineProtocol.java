@@ -0,0 +1,238 @@
+package com.slenergy.gateway.api.server.ingest;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * class LineProtocol description
+ * InfluxDB行协议的编码和解析, 用于把数据点写入磁盘缓存以及从缓存中恢复
+ * 整数写成带i后缀的形式, 解析后为Long, 浮点数解析后为Double, 字符串值中允许出现换行
+ *
+ * @author Eric Li
+ * @version 1.0
+ *
+ * @since 2026-10-18
+ * @since 1.0
+ */
+public final class LineProtocol {
+
+    private LineProtocol() {}
+
+    /**
+     * 写入表名和标签, 即一行数据中第一个空格之前的部分
+     * @param sb 输出
+     * @param measurement 表名
+     * @param tags 标签
+     */
+    public static void appendPrefix(StringBuilder sb, String measurement, Map<String, String> tags) {
+        escape(sb, measurement, false);
+        for (Map.Entry<String, String> tag : tags.entrySet()) {
+            if (tag.getValue() == null || tag.getValue().isEmpty())
+                continue;
+
+            sb.append(',');
+            escape(sb, tag.getKey(), true);
+            sb.append('=');
+            escape(sb, tag.getValue(), true);
+        }
+    }
+
+    /**
+     * 写入数据和时间戳, 不能表示的数据(NaN, Infinity)会被忽略
+     * @param sb 输出
+     * @param fields 数据
+     * @param timestamp 纳秒时间戳
+     * @return 是否至少写入了一个数据
+     */
+    public static boolean appendFields(StringBuilder sb, Map<String, Object> fields, long timestamp) {
+        char separator = ' ';
+        for (Map.Entry<String, Object> field : fields.entrySet()) {
+            Object value = field.getValue();
+            if (value == null || (value instanceof Double d && !Double.isFinite(d)) || (value instanceof Float f && !Float.isFinite(f)))
+                continue;
+
+            sb.append(separator);
+            separator = ',';
+            escape(sb, field.getKey(), true);
+            sb.append('=');
+            if (value instanceof Double || value instanceof Float || value instanceof BigDecimal) {
+                sb.append(value);
+            } else if (value instanceof Number) {
+                sb.append(value).append('i');
+            } else if (value instanceof Boolean) {
+                sb.append(value);
+            } else {
+                sb.append('"');
+                String s = value.toString();
+                for (int i = 0; i < s.length(); i++) {
+                    char c = s.charAt(i);
+                    if (c == '"' || c == '\\')
+                        sb.append('\\');
+                    sb.append(c);
+                }
+                sb.append('"');
+            }
+        }
+
+        if (separator == ' ')
+            return false;
+
+        sb.append(' ').append(timestamp);
+        return true;
+    }
+
+    /**
+     * 把一个数据点编码成一行, 末尾带换行符
+     * @param sb 输出
+     * @param point 数据点
+     */
+    public static void append(StringBuilder sb, DataPoint point) {
+        int start = sb.length();
+        sb.append(point.template().prefix());
+        if (appendFields(sb, point.fields(), point.timestamp()))
+            sb.append('\n');
+        else
+            sb.setLength(start);
+    }
+
+    /**
+     * 解析多行数据
+     * @param text 行协议文本
+     * @return 数据点
+     * @throws IllegalArgumentException 格式错误
+     */
+    public static List<DataPoint> parse(CharSequence text) {
+        List<DataPoint> points = new ArrayList<>();
+        Parser parser = new Parser(text);
+        while (parser.skipBlank())
+            points.add(parser.point());
+
+        return points;
+    }
+
+    private static void escape(StringBuilder sb, String s, boolean equals) {
+        for (int i = 0; i < s.length(); i++) {
+            char c = s.charAt(i);
+            if (c == ',' || c == ' ' || (equals && c == '=') || c == '\\')
+                sb.append('\\');
+            else if (c == '\n') {
+                // 名称中不能出现换行, 换成转义的空格, 否则空格会被当成分隔符
+                sb.append("\\ ");
+                continue;
+            }
+            sb.append(c);
+        }
+    }
+
+    private static final class Parser {
+
+        private final CharSequence text;
+        private int pos;
+
+        private Parser(CharSequence text) {
+            this.text = text;
+        }
+
+        private boolean skipBlank() {
+            while (pos < text.length() && Character.isWhitespace(text.charAt(pos)))
+                pos++;
+
+            return pos < text.length();
+        }
+
+        private DataPoint point() {
+            String measurement = token(", ");
+            Map<String, String> tags = new HashMap<>();
+            while (peek() == ',') {
+                pos++;
+                String key = token("=");
+                expect('=');
+                tags.put(key, token(", "));
+            }
+            expect(' ');
+
+            Map<String, Object> fields = new HashMap<>();
+            do {
+                if (peek() == ',')
+                    pos++;
+                String key = token("=");
+                expect('=');
+                fields.put(key, value());
+            } while (peek() == ',');
+            expect(' ');
+
+            int start = pos;
+            while (pos < text.length() && text.charAt(pos) != '\n')
+                pos++;
+
+            return new DataPoint(PointTemplate.create(measurement, tags), fields, Long.parseLong(text.subSequence(start, pos).toString().trim()));
+        }
+
+        private Object value() {
+            if (peek() == '"') {
+                pos++;
+                StringBuilder sb = new StringBuilder();
+                while (pos < text.length() && text.charAt(pos) != '"') {
+                    char c = text.charAt(pos++);
+                    if (c == '\\' && pos < text.length())
+                        c = text.charAt(pos++);
+                    sb.append(c);
+                }
+                expect('"');
+                return sb.toString();
+            }
+
+            String raw = token(", ");
+            switch (raw) {
+                case "t", "T", "true", "True", "TRUE" -> {
+                    return Boolean.TRUE;
+                }
+                case "f", "F", "false", "False", "FALSE" -> {
+                    return Boolean.FALSE;
+                }
+                default -> {
+                    char last = raw.charAt(raw.length() - 1);
+                    if (last == 'i' || last == 'u')
+                        return Long.parseLong(raw.substring(0, raw.length() - 1));
+                    return Double.parseDouble(raw);
+                }
+            }
+        }
+
+        private String token(String stops) {
+            StringBuilder sb = new StringBuilder();
+            while (pos < text.length()) {
+                char c = text.charAt(pos);
+                if (c == '\\' && pos + 1 < text.length()) {
+                    sb.append(text.charAt(pos + 1));
+                    pos += 2;
+                    continue;
+                }
+                if (stops.indexOf(c) >= 0 || c == '\n')
+                    break;
+                sb.append(c);
+                pos++;
+            }
+
+            if (sb.isEmpty())
+                throw new IllegalArgumentException("行协议格式错误, 位置: " + pos);
+
+            return sb.toString();
+        }
+
+        private char peek() {
+            return pos < text.length() ? text.charAt(pos) : '\n';
+        }
+
+        private void expect(char c) {
+            if (peek() != c)
+                throw new IllegalArgumentException("行协议格式错误, 位置: " + pos + ", 需要: '" + c + "'");
+            pos++;
+        }
+
+    }
+
+}
@@ -0,0 +1,157 @@
+package com.slenergy.gateway.api.server.ingest;
+
+import com.slenergy.gateway.api.server.schema.RealTimeData;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * class PointEncoder description
+ * 把一次上报的实时数据编码成数据点, 表名、标签和时间戳相同的数据合并成一个多字段的数据点,
+ * 而不是每个字段写一个数据点, 标签使用按设备缓存的{@link PointTemplate}
+ *
+ * <p>
+ * <pre>{@code
+ * PointEncoder encoder = new PointEncoder();
+ * encoder.begin("inverter", "SN001", "solinteg", timestamp, "ms");
+ * encoder.add("runtimeInformation", null, "pvPower", 1.5);
+ * encoder.end();
+ * List<DataPoint> points = encoder.takePoints();
+ * }</pre>
+ * </p>
+ *
+ * @author Eric Li
+ * @version 1.0
+ *
+ * @since 2026-10-18
+ * @since 1.0
+ */
+public final class PointEncoder implements IngestListener {
+
+    private String measurement;
+    private String serialNumber;
+    private String deviceName;
+    private long timestamp;
+    /**
+     * 一次上报中的tag组合一般只有几个, 线性查找比拼接key放入HashMap更省
+     */
+    private final List<Group> groups;
+    /**
+     * 已经编码完成的数据点, 可以累积多次上报
+     */
+    private List<DataPoint> points;
+
+    private static final class Group {
+
+        private final String tag;
+        private final String subTag;
+        private final Map<String, Object> fields;
+
+        private Group(String tag, String subTag) {
+            this.tag = tag;
+            this.subTag = subTag;
+            this.fields = new HashMap<>();
+        }
+
+    }
+
+    public PointEncoder() {
+        groups = new ArrayList<>();
+        points = new ArrayList<>();
+    }
+
+    @Override
+    public void begin(String deviceType, String serialNumber, String deviceName, long timestamp, String timeUnit) {
+        this.measurement = deviceType;
+        this.serialNumber = serialNumber;
+        this.deviceName = deviceName;
+        this.timestamp = toNanos(timestamp, timeUnit);
+        groups.clear();
+    }
+
+    @Override
+    public void add(String tag, String subTag, String field, Object value) {
+        // 实时数据库不能写入空值
+        if (field == null || value == null)
+            return;
+
+        Group group = null;
+        for (Group elem : groups) {
+            if (Objects.equals(elem.tag, tag) && Objects.equals(elem.subTag, subTag)) {
+                group = elem;
+                break;
+            }
+        }
+
+        if (group == null) {
+            group = new Group(tag, subTag);
+            groups.add(group);
+        }
+        group.fields.put(field, value);
+    }
+
+    @Override
+    public void end() {
+        if (measurement == null || serialNumber == null) {
+            groups.clear();
+            return;
+        }
+
+        for (Group group : groups)
+            points.add(new DataPoint(PointTemplate.of(measurement, serialNumber, deviceName, group.tag, group.subTag), group.fields, timestamp));
+        groups.clear();
+    }
+
+    @Override
+    public void abort() {
+        groups.clear();
+    }
+
+    /**
+     * 取出已经编码完成的数据点
+     * @return 数据点
+     */
+    public List<DataPoint> takePoints() {
+        List<DataPoint> ret = points;
+        points = new ArrayList<>();
+        return ret;
+    }
+
+    public int size() {
+        return points.size();
+    }
+
+    public static List<DataPoint> encode(RealTimeData data) {
+        PointEncoder encoder = new PointEncoder();
+        encoder.accept(data);
+        return encoder.takePoints();
+    }
+
+    /**
+     * 把上报的时间戳转换成纳秒
+     * @param timestamp 时间戳
+     * @param unit 时间单位, s/ms/us/ns, 为空时默认ms
+     * @return 纳秒时间戳
+     */
+    public static long toNanos(long timestamp, String unit) {
+        return TimeUnit.NANOSECONDS.convert(timestamp, transferTimeUnit(unit));
+    }
+
+    private static TimeUnit transferTimeUnit(String unit) {
+        if (unit == null)
+            return TimeUnit.MILLISECONDS;
+
+        TimeUnit ret = TimeUnit.MILLISECONDS;
+        switch (unit.toLowerCase()) {
+            case "s" -> ret = TimeUnit.SECONDS;
+            case "us" -> ret = TimeUnit.MICROSECONDS;
+            case "ns" -> ret = TimeUnit.NANOSECONDS;
+        }
+        return ret;
+    }
+
+}
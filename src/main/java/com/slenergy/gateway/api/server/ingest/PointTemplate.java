@@ -0,0 +1,77 @@
+package com.slenergy.gateway.api.server.ingest;
+
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * {@code record} {@code PointTemplate} description
+ * 数据点中不随时间变化的部分: 表名、不可变的标签以及转义好的行协议前缀,
+ * 按设备缓存, 同一设备的每次上报只需要填入数据和时间戳
+ *
+ * @param measurement 表名, 即设备类型
+ * @param tags 不可变的标签
+ * @param prefix 转义好的行协议前缀(表名和标签)
+ *
+ * @author Eric Li
+ * @version 1.0
+ *
+ * @since 2026-10-18
+ * @since 1.0
+ */
+public record PointTemplate(String measurement, Map<String, String> tags, String prefix) {
+
+    /**
+     * 缓存的模板数量上限, 超过时清空重建, 防止错误的序列号撑满内存
+     */
+    private final static int MAX_TEMPLATES = 16384;
+    private final static Map<Key, PointTemplate> CACHE = new ConcurrentHashMap<>();
+
+    private record Key(String measurement, String serialNumber, String deviceName, String tag, String subTag) {}
+
+    /**
+     * 获取缓存的模板
+     * @param measurement 表名
+     * @param serialNumber 设备序列号
+     * @param deviceName 设备名称, 可以为空
+     * @param tag 标签, 可以为空
+     * @param subTag 子标签, 可以为空
+     * @return 模板
+     */
+    public static PointTemplate of(String measurement, String serialNumber, String deviceName, String tag, String subTag) {
+        Key key = new Key(measurement, serialNumber, deviceName, tag, subTag);
+        PointTemplate template = CACHE.get(key);
+        if (template != null)
+            return template;
+
+        if (CACHE.size() >= MAX_TEMPLATES)
+            CACHE.clear();
+
+        return CACHE.computeIfAbsent(key, k -> {
+            Map<String, String> tags = new TreeMap<>();
+            tags.put("deviceSN", k.serialNumber());
+            if (k.deviceName() != null)
+                tags.put("deviceName", k.deviceName());
+            if (k.tag() != null)
+                tags.put("tag", k.tag());
+            if (k.subTag() != null)
+                tags.put("subTag", k.subTag());
+            return create(k.measurement(), tags);
+        });
+    }
+
+    /**
+     * 创建不缓存的模板, 用于从磁盘缓存中恢复的数据点
+     * @param measurement 表名
+     * @param tags 标签
+     * @return 模板
+     */
+    public static PointTemplate create(String measurement, Map<String, String> tags) {
+        // 按标签名排序, 和实时数据库内部的顺序一致
+        Map<String, String> sorted = new TreeMap<>(tags);
+        StringBuilder sb = new StringBuilder(64);
+        LineProtocol.appendPrefix(sb, measurement, sorted);
+        return new PointTemplate(measurement, Map.copyOf(sorted), sb.toString());
+    }
+
+}
@@ -0,0 +1,130 @@
+package com.slenergy.gateway.api.server.ingest;
+
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * class RealTimeDataDecoder description
+ * 用Jackson流式解析器解析一条实时数据上报, JSON和CBOR共用同一套解析逻辑,
+ * 解析出来的字段直接回调{@link IngestListener}, 不构建中间对象
+ *
+ * <p>
+ * 数据结构与{@link com.slenergy.gateway.api.server.schema.RealTimeData}一致,
+ * 设备信息(deviceType, serialNumber, deviceName, timestamp, timeUnit)需要在timeSeries之前,
+ * 否则timeSeries会先缓存起来, 等整条数据解析完再回调
+ * </p>
+ *
+ * @author Eric Li
+ * @version 1.0
+ *
+ * @since 2026-10-18
+ * @since 1.0
+ */
+public final class RealTimeDataDecoder {
+
+    private RealTimeDataDecoder() {}
+
+    /**
+     * 解析一条实时数据, 解析器需要停在该条数据的START_OBJECT上
+     * @param parser 解析器
+     * @param listener 回调
+     * @throws IOException 数据格式错误
+     */
+    public static void decode(JsonParser parser, IngestListener listener) throws IOException {
+        if (parser.currentToken() != JsonToken.START_OBJECT)
+            throw new IOException("实时数据必须是一个对象");
+
+        String deviceType = null;
+        String serialNumber = null;
+        String deviceName = null;
+        long timestamp = 0;
+        String timeUnit = null;
+        boolean begun = false;
+        // 设备信息出现在timeSeries之后时才会用到
+        List<Object[]> deferred = null;
+
+        while (parser.nextToken() == JsonToken.FIELD_NAME) {
+            String name = parser.currentName();
+            JsonToken token = parser.nextToken();
+            switch (name) {
+                case "deviceType" -> deviceType = parser.getValueAsString();
+                case "serialNumber" -> serialNumber = parser.getValueAsString();
+                case "deviceName" -> deviceName = parser.getValueAsString();
+                case "timestamp" -> timestamp = parser.getValueAsLong();
+                case "timeUnit" -> timeUnit = parser.getValueAsString();
+                case "timeSeries" -> {
+                    if (token != JsonToken.START_ARRAY) {
+                        parser.skipChildren();
+                        continue;
+                    }
+
+                    if (deviceType != null && serialNumber != null) {
+                        listener.begin(deviceType, serialNumber, deviceName, timestamp, timeUnit);
+                        begun = true;
+                        decodeTimeSeries(parser, listener, null);
+                    } else {
+                        deferred = new ArrayList<>();
+                        decodeTimeSeries(parser, null, deferred);
+                    }
+                }
+                default -> parser.skipChildren();
+            }
+        }
+
+        if (!begun) {
+            listener.begin(deviceType, serialNumber, deviceName, timestamp, timeUnit);
+            if (deferred != null) {
+                for (Object[] entry : deferred)
+                    listener.add((String) entry[0], (String) entry[1], (String) entry[2], entry[3]);
+            }
+        }
+        listener.end();
+    }
+
+    private static void decodeTimeSeries(JsonParser parser, IngestListener listener, List<Object[]> deferred) throws IOException {
+        while (parser.nextToken() == JsonToken.START_OBJECT) {
+            String tag = null;
+            String subTag = null;
+            String field = null;
+            Object value = null;
+            while (parser.nextToken() == JsonToken.FIELD_NAME) {
+                String name = parser.currentName();
+                parser.nextToken();
+                switch (name) {
+                    case "tag" -> tag = parser.getValueAsString();
+                    case "subTag" -> subTag = parser.getValueAsString();
+                    case "field" -> field = parser.getValueAsString();
+                    case "value" -> value = readValue(parser);
+                    default -> parser.skipChildren();
+                }
+            }
+
+            if (listener != null)
+                listener.add(tag, subTag, field, value);
+            else
+                deferred.add(new Object[]{tag, subTag, field, value});
+        }
+    }
+
+    /**
+     * 读取标量值, 类型与jackson-databind反序列化成Object时保持一致, 浮点数统一为Double
+     */
+    private static Object readValue(JsonParser parser) throws IOException {
+        return switch (parser.currentToken()) {
+            case VALUE_NUMBER_INT -> parser.getNumberValue();
+            case VALUE_NUMBER_FLOAT -> parser.getDoubleValue();
+            case VALUE_STRING -> parser.getText();
+            case VALUE_TRUE -> Boolean.TRUE;
+            case VALUE_FALSE -> Boolean.FALSE;
+            default -> {
+                parser.skipChildren();
+                yield null;
+            }
+        };
+    }
+
+}
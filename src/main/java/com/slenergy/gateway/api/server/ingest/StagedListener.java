@@ -0,0 +1,95 @@
+package com.slenergy.gateway.api.server.ingest;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * class StagedListener description
+ * 暂存一次请求中的上报, 数据点放入写入缓冲区之后才{@link #commit()}回放给被包装的回调, 被拒绝时{@link #rollback()}丢弃,
+ * 设备的实时状态, 最新值缓存和订阅推送只反映已经接收的数据, 客户端重试时也不会重复推送
+ * 实例不是线程安全的
+ *
+ * <p>
+ * <pre>{@code
+ * StagedListener staged = new StagedListener(IngestListener.compose(new DeviceUpdater(), LatestValueStore.getInstance().listener()));
+ * IngestListener.compose(staged, encoder).accept(data);
+ * if (InfluxWriter.getInstance().offer(encoder.takePoints()))
+ *     staged.commit();
+ * else
+ *     staged.rollback();
+ * }</pre>
+ * </p>
+ *
+ * @author Eric Li
+ * @version 1.0
+ *
+ * @since 2026-10-18
+ * @since 1.0
+ */
+public final class StagedListener implements IngestListener {
+
+    private final IngestListener listener;
+    /**
+     * 已经结束的上报
+     */
+    private final List<Report> reports;
+    private Report current;
+
+    private record Report(String deviceType, String serialNumber, String deviceName, long timestamp, String timeUnit, List<Object[]> fields) {}
+
+    public StagedListener(IngestListener listener) {
+        this.listener = listener;
+        this.reports = new ArrayList<>();
+    }
+
+    @Override
+    public void begin(String deviceType, String serialNumber, String deviceName, long timestamp, String timeUnit) {
+        current = new Report(deviceType, serialNumber, deviceName, timestamp, timeUnit, new ArrayList<>());
+    }
+
+    @Override
+    public void add(String tag, String subTag, String field, Object value) {
+        if (current != null)
+            current.fields().add(new Object[] {tag, subTag, field, value});
+    }
+
+    @Override
+    public void end() {
+        if (current != null)
+            reports.add(current);
+        current = null;
+    }
+
+    @Override
+    public void abort() {
+        current = null;
+    }
+
+    /**
+     * @return 暂存的上报数量
+     */
+    public int size() {
+        return reports.size();
+    }
+
+    /**
+     * 数据点已经放入写入缓冲区, 把暂存的上报按顺序回放给被包装的回调
+     */
+    public void commit() {
+        for (Report report : reports) {
+            listener.begin(report.deviceType(), report.serialNumber(), report.deviceName(), report.timestamp(), report.timeUnit());
+            for (Object[] field : report.fields())
+                listener.add((String) field[0], (String) field[1], (String) field[2], field[3]);
+            listener.end();
+        }
+        reports.clear();
+    }
+
+    /**
+     * 数据点没有放入写入缓冲区, 丢弃暂存的上报
+     */
+    public void rollback() {
+        reports.clear();
+    }
+
+}
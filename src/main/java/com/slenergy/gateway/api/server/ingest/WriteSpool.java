@@ -0,0 +1,364 @@
+package com.slenergy.gateway.api.server.ingest;
+
+import io.vertx.core.json.JsonObject;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.List;
+
+/**
+ * class WriteSpool description
+ * 实时数据库不可用时的磁盘缓存, 由若干个只追加的内存映射分段文件组成, 按写入顺序回放, 回放完的分段文件直接删除
+ * 分段文件格式: 头部8个字节, 分别为写入位置和回放位置, 之后每条记录为 长度(4字节) + 数据点数量(4字节) + 行协议文本(UTF-8)
+ * 头部或者记录长度超出范围的分段文件加上.corrupt后缀移出缓存目录的回放范围, 不影响其他分段文件
+ * 只能由写入器的线程访问, 不是线程安全的
+ *
+ * @author Eric Li
+ * @version 1.0
+ *
+ * @since 2026-10-18
+ * @since 1.0
+ */
+final class WriteSpool {
+
+    private final static Logger LOGGER = LogManager.getLogger(WriteSpool.class);
+    private final static String SUFFIX = ".seg";
+    private final static String CORRUPT = ".corrupt";
+    private final static int HEADER = 8;
+    private final static int RECORD_HEADER = 8;
+
+    private final Path dir;
+    private final int segmentSize;
+    private final long maxSize;
+    private final Deque<Segment> segments;
+    private long sequence;
+    /**
+     * 缓存中还没回放的数据点数量和字节数
+     */
+    private long depth;
+    private long bytes;
+    private long spooled;
+    private long replayed;
+    private long discarded;
+
+    /**
+     *
+     * @param options dir: 缓存目录, segmentSize: 分段文件大小(字节), maxSize: 缓存总大小上限(字节)
+     * @throws IOException 无法创建目录或者打开已有分段文件
+     */
+    WriteSpool(JsonObject options) throws IOException {
+        dir = Paths.get(options.getString("dir", "/data/backup/mmcblk1p1/spool"));
+        segmentSize = options.getInteger("segmentSize", 16 * 1024 * 1024);
+        maxSize = options.getLong("maxSize", 1024L * 1024 * 1024);
+        segments = new ArrayDeque<>();
+        Files.createDirectories(dir);
+
+        List<Path> files = new ArrayList<>();
+        try (DirectoryStream<Path> stream = Files.newDirectoryStream(dir, "*" + SUFFIX)) {
+            stream.forEach(files::add);
+        }
+        files.sort(null);
+        for (Path file : files) {
+            String name = file.getFileName().toString();
+            Segment segment;
+            try {
+                sequence = Math.max(sequence, Long.parseLong(name.substring(0, name.length() - SUFFIX.length())));
+                segment = new Segment(file, 0);
+            } catch (IOException | RuntimeException e) {
+                LOGGER.warn("磁盘缓存分段文件{}已损坏, 不再回放: {}", file, e.getMessage());
+                quarantine(file);
+                continue;
+            }
+            if (segment.isEmpty()) {
+                segment.delete();
+                continue;
+            }
+            segments.addLast(segment);
+            depth += segment.points();
+            bytes += segment.bytes();
+        }
+        if (depth > 0)
+            LOGGER.info("磁盘缓存中有{}条未写入的数据, 共{}个分段文件", depth, segments.size());
+    }
+
+    /**
+     * 追加一批数据点, 缓存已满时丢弃
+     * @param points 数据点
+     * @return 是否写入缓存
+     */
+    boolean append(List<DataPoint> points) {
+        StringBuilder sb = new StringBuilder(points.size() * 128);
+        for (DataPoint point : points)
+            LineProtocol.append(sb, point);
+        byte[] data = sb.toString().getBytes(StandardCharsets.UTF_8);
+
+        if (bytes + data.length > maxSize) {
+            discarded += points.size();
+            LOGGER.warn("磁盘缓存已满, 丢弃{}条数据", points.size());
+            return false;
+        }
+
+        try {
+            Segment tail = segments.peekLast();
+            if (tail == null || !tail.fits(data.length)) {
+                tail = new Segment(dir.resolve(String.format("%020d%s", ++sequence, SUFFIX)), Math.max(segmentSize, HEADER + RECORD_HEADER + data.length));
+                segments.addLast(tail);
+            }
+            tail.append(data, points.size());
+        } catch (IOException e) {
+            discarded += points.size();
+            LOGGER.warn("写入磁盘缓存失败, 丢弃{}条数据: {}", points.size(), e.getMessage());
+            return false;
+        }
+
+        depth += points.size();
+        bytes += data.length;
+        spooled += points.size();
+        return true;
+    }
+
+    boolean isEmpty() {
+        return depth == 0;
+    }
+
+    /**
+     * 读取最早的一条记录, 不会移动回放位置, 写入成功后需要调用{@link #commit()}
+     * @return 数据点, 缓存为空时返回null
+     */
+    List<DataPoint> peek() {
+        while (!segments.isEmpty()) {
+            Segment head = segments.peekFirst();
+            if (!head.isEmpty()) {
+                String text;
+                try {
+                    text = head.peek();
+                } catch (IllegalStateException e) {
+                    // 记录的位置或长度不可信, 之后的记录也无法定位, 整个分段文件不再回放
+                    LOGGER.warn("磁盘缓存分段文件已损坏, 丢弃{}条数据: {}", head.points(), e.getMessage());
+                    segments.pollFirst();
+                    depth -= head.points();
+                    bytes -= head.bytes();
+                    discarded += head.points();
+                    quarantine(head.file);
+                    continue;
+                }
+                try {
+                    return LineProtocol.parse(text);
+                } catch (IllegalArgumentException e) {
+                    LOGGER.warn("磁盘缓存中的数据已损坏, 跳过: {}", e.getMessage());
+                    discarded += skip();
+                    continue;
+                }
+            }
+            if (segments.size() == 1)
+                return null;
+            segments.pollFirst().delete();
+        }
+
+        return null;
+    }
+
+    /**
+     * 移动回放位置到下一条记录, 分段文件回放完时删除
+     */
+    void commit() {
+        replayed += skip();
+    }
+
+    /**
+     * 移动回放位置到下一条记录, 不计入回放的数量
+     * @return 跳过的记录中的数据点数量
+     */
+    private int skip() {
+        Segment head = segments.peekFirst();
+        if (head == null || head.isEmpty())
+            return 0;
+
+        int points = head.peekPoints();
+        bytes -= head.skip();
+        depth -= points;
+        if (head.isEmpty() && segments.size() > 1)
+            segments.pollFirst().delete();
+        return points;
+    }
+
+    long replayed() {
+        return replayed;
+    }
+
+    JsonObject metrics() {
+        return new JsonObject()
+                .put("depth", depth)
+                .put("bytes", bytes)
+                .put("segments", segments.size())
+                .put("spooled", spooled)
+                .put("replayed", replayed)
+                .put("discarded", discarded);
+    }
+
+    void close() {
+        segments.forEach(Segment::force);
+    }
+
+    /**
+     * 损坏的分段文件加上后缀保留下来, 无法改名时删除
+     */
+    private static void quarantine(Path file) {
+        try {
+            Files.move(file, file.resolveSibling(file.getFileName() + CORRUPT), StandardCopyOption.REPLACE_EXISTING);
+        } catch (IOException e) {
+            LOGGER.warn("无法移动分段文件{}: {}", file, e.getMessage());
+            try {
+                Files.deleteIfExists(file);
+            } catch (IOException ex) {
+                LOGGER.warn("无法删除分段文件{}: {}", file, ex.getMessage());
+            }
+        }
+    }
+
+    /**
+     * 一个内存映射的分段文件
+     */
+    private static final class Segment {
+
+        private final Path file;
+        private final MappedByteBuffer buffer;
+        /**
+         * 还没回放的数据点数量和字节数
+         */
+        private long points;
+        private long bytes;
+
+        /**
+         *
+         * @param file 文件
+         * @param size 新建文件的大小, 为0时打开已有文件
+         * @throws IOException 无法打开文件
+         * @throws IllegalStateException 已有文件的头部或者记录已损坏
+         */
+        private Segment(Path file, int size) throws IOException {
+            this.file = file;
+            try (RandomAccessFile raf = new RandomAccessFile(file.toFile(), "rw")) {
+                long length = size == 0 ? raf.length() : size;
+                if (length < HEADER || length > Integer.MAX_VALUE)
+                    throw new IOException("分段文件已损坏: " + file);
+                buffer = raf.getChannel().map(FileChannel.MapMode.READ_WRITE, 0, length);
+            }
+            if (size != 0) {
+                buffer.putInt(0, HEADER);
+                buffer.putInt(4, HEADER);
+                return;
+            }
+
+            int read = readPos();
+            if (read < HEADER || read > writePos() || writePos() > buffer.capacity())
+                throw new IllegalStateException("分段文件" + file + "的头部已损坏");
+            for (int pos = read; pos < writePos(); ) {
+                int length = length(pos);
+                points += buffer.getInt(pos + 4);
+                bytes += length;
+                pos += RECORD_HEADER + length;
+            }
+        }
+
+        private int writePos() {
+            return buffer.getInt(0);
+        }
+
+        private int readPos() {
+            return buffer.getInt(4);
+        }
+
+        /**
+         * @param pos 记录的位置
+         * @return 记录的长度
+         * @throws IllegalStateException 记录的位置, 长度或者数据点数量超出范围
+         */
+        private int length(int pos) {
+            int write = writePos();
+            if (write > buffer.capacity() || pos < HEADER || pos > write - RECORD_HEADER)
+                throw new IllegalStateException("分段文件" + file + "的位置" + pos + "超出范围");
+            int length = buffer.getInt(pos);
+            if (length < 0 || length > write - pos - RECORD_HEADER || buffer.getInt(pos + 4) < 0)
+                throw new IllegalStateException("分段文件" + file + "中位置" + pos + "的记录已损坏");
+            return length;
+        }
+
+        private boolean fits(int length) {
+            return writePos() + RECORD_HEADER + length <= buffer.capacity();
+        }
+
+        private void append(byte[] data, int points) {
+            int pos = writePos();
+            buffer.putInt(pos, data.length);
+            buffer.putInt(pos + 4, points);
+            buffer.put(pos + RECORD_HEADER, data);
+            // 数据写完之后再更新写入位置, 进程中断时不会留下半条记录
+            buffer.putInt(0, pos + RECORD_HEADER + data.length);
+            this.points += points;
+            bytes += data.length;
+        }
+
+        private boolean isEmpty() {
+            return readPos() >= writePos();
+        }
+
+        private String peek() {
+            int pos = readPos();
+            byte[] data = new byte[length(pos)];
+            buffer.get(pos + RECORD_HEADER, data);
+            return new String(data, StandardCharsets.UTF_8);
+        }
+
+        private int peekPoints() {
+            return buffer.getInt(readPos() + 4);
+        }
+
+        /**
+         * @return 跳过的字节数
+         */
+        private int skip() {
+            int pos = readPos();
+            int length = length(pos);
+            points -= buffer.getInt(pos + 4);
+            bytes -= length;
+            buffer.putInt(4, pos + RECORD_HEADER + length);
+            return length;
+        }
+
+        private long points() {
+            return points;
+        }
+
+        private long bytes() {
+            return bytes;
+        }
+
+        private void force() {
+            buffer.force();
+        }
+
+        private void delete() {
+            try {
+                Files.deleteIfExists(file);
+            } catch (IOException e) {
+                LOGGER.warn("无法删除分段文件{}: {}", file, e.getMessage());
+            }
+        }
+
+    }
+
+}
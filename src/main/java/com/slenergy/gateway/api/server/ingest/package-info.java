@@ -0,0 +1,10 @@
+/**
+ * 实时数据写入包，负责把设备上报的数据转换成数据点并批量写入实时数据库
+ *
+ * @author Eric Li
+ * @version 1.0
+ *
+ * @since 2026-10-18
+ * @since 1.0
+ */
+package com.slenergy.gateway.api.server.ingest;
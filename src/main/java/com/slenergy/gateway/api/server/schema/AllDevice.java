@@ -3,6 +3,7 @@ package com.slenergy.gateway.api.server.schema;
 /**
  * {@code record} {@code AllDevice} description
  * 获取设备类型的全部数据
+ * sinceVersion不为空时只返回这个版本之后有变化的设备, 以及interval分钟内没有上报的设备序列号
  *
  * @author Eric Li
  * @version 1.0-SNAPSHOT
@@ -10,4 +11,4 @@ package com.slenergy.gateway.api.server.schema;
  * @since 2024-01-23
  * @since 1.0-SNAPSHOT
  */
-public record AllDevice(int interval) {}
+public record AllDevice(int interval, Long sinceVersion) {}
@@ -3,6 +3,9 @@ package com.slenergy.gateway.api.server.schema;
 /**
  * {@code record} {@code DeviceRealTimeData} description
  * 用于获取单个设备的实时数据
+ * limit为空时一次返回时间范围内的所有数据, 否则按时间倒序分页返回, cursor为上一页返回的游标
+ * window为聚合的时间窗口, 例如1m, aggregate为聚合函数(mean, max, min, first, last), points为目标点数,
+ * 只指定aggregate或points时按目标点数计算时间窗口
  *
  * @author Eric Li
  * @version 1.0-SNAPSHOT
@@ -10,4 +13,4 @@ package com.slenergy.gateway.api.server.schema;
  * @since 2023-12-11
  * @since 1.0-SNAPSHOT
  */
-public record DeviceRealTimeData(String measurement, String deviceSN, String deviceName, String start, String stop) {}
+public record DeviceRealTimeData(String measurement, String deviceSN, String deviceName, String start, String stop, Integer limit, String cursor, String window, String aggregate, Integer points) {}
@@ -8,6 +8,8 @@ import lombok.Getter;
  *
  * <p>
  * - {@link ResponseEnum#SUCCESS}: 成功调用
+ * - {@link ResponseEnum#BUSY}: 服务繁忙, 请求没有被接收
+ * - {@link ResponseEnum#TOO_MANY_REQUESTS}: 设备上报过于频繁, 请求没有被接收
  * </p>
  *
  * <p>
@@ -30,7 +32,9 @@ public enum ResponseEnum {
      *
      */
     SUCCESS(20000, "成功调用"),
-    FAILED(40000, "没有找到数据");
+    FAILED(40000, "没有找到数据"),
+    BUSY(50300, "服务繁忙，请稍后重试"),
+    TOO_MANY_REQUESTS(42900, "上报过于频繁，请稍后重试");
 
     /**
      * 枚举常量的代码
@@ -0,0 +1,157 @@
+package com.slenergy.gateway.api.server.util;
+
+import com.slenergy.gateway.api.server.FrameHeaders;
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.ByteBufUtil;
+import io.netty.buffer.Unpooled;
+
+import java.time.LocalDateTime;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * class BmsCellFrame description
+ * 把bms单体(电芯)的最新数据编码成上传云端的f901数据帧, 查询结果只按tag索引一次, 每个tag的寄存器保存在按地址排序的long数组中,
+ * 最后一次顺序写入{@link ByteBuf}, 不使用正则表达式, 也不需要对每个tag重新扫描查询结果
+ * 数据帧格式: 序列号前缀(60字节) + 时间戳(6字节) + 设备类型(2字节) + 数据区段个数(1字节, 0) + 单体电压的寄存器地址(每个2字节)
+ * + 压缩状态(1字节, 0) + 按单体电压, 单体温度, 温控温度, 均衡状态的顺序写入每个寄存器的地址(2字节)和值(2字节)
+ * 实例不是线程安全的, 可以重复使用
+ *
+ * <p>
+ * <pre>{@code
+ * BmsCellFrame frame = new BmsCellFrame();
+ * FrameHeaders.Header header = FrameHeaders.getInstance().header("batteryCell", serialNumber);
+ * String hex = frame.encode(header, LocalDateTime.now(), rows) ? frame.toHex() : null;
+ * }</pre>
+ * </p>
+ *
+ * @author Eric Li
+ * @version 1.0
+ *
+ * @since 2026-10-18
+ * @since 1.0
+ */
+public final class BmsCellFrame {
+
+    /**
+     * 写入的顺序
+     */
+    private final static String[] TAGS = {"SingleCellVoltage", "SingleTemperature", "RTControlTemperature", "MonomerEquilibriumState"};
+    private final static int VOLTAGE = 0;
+    private final static int NOT_REGISTER = -1;
+
+    private final ByteBuf buffer;
+    /**
+     * 每个tag的寄存器, 地址 << 16 | 值, 按地址排序
+     */
+    private final long[][] registers;
+    /**
+     * 每个tag的寄存器数量, 查询结果中没有这个tag时为-1
+     */
+    private final int[] counts;
+
+    public BmsCellFrame() {
+        buffer = Unpooled.buffer(1024);
+        registers = new long[TAGS.length][64];
+        counts = new int[TAGS.length];
+    }
+
+    /**
+     * 编码数据帧, 之前的内容会被清除
+     * @param header 帧头部
+     * @param time 数据时间
+     * @param rows 查询结果, 每个tag使用第一行, 键全部是十六进制字符的字段为寄存器
+     * @return 数据是否完整, 寄存器地址超过2字节或者值不是4位十六进制时返回false
+     */
+    public boolean encode(FrameHeaders.Header header, LocalDateTime time, List<Map<String, Object>> rows) {
+        if (!index(rows))
+            return false;
+
+        // clear不会释放已经分配的内存
+        buffer.clear();
+        SegmentEncoder.header(buffer, header, time);
+        // 数据区段个数
+        buffer.writeByte(0);
+        // 电芯数量, 写入单体电压的寄存器地址
+        for (int i = 0; i < counts[VOLTAGE]; i++)
+            buffer.writeShort((int) (registers[VOLTAGE][i] >>> 16));
+        // 压缩状态
+        buffer.writeByte(0);
+        for (int tag = 0; tag < TAGS.length; tag++) {
+            // 地址和值各2字节, 正好是低32位
+            for (int i = 0; i < counts[tag]; i++)
+                buffer.writeInt((int) registers[tag][i]);
+        }
+        return true;
+    }
+
+    /**
+     * @return 编码结果的十六进制字符串(小写)
+     */
+    public String toHex() {
+        return ByteBufUtil.hexDump(buffer);
+    }
+
+    /**
+     * 遍历一次查询结果, 把每个tag第一行的寄存器解析到数组中并按地址排序
+     */
+    private boolean index(List<Map<String, Object>> rows) {
+        Arrays.fill(counts, -1);
+        for (Map<String, Object> row : rows) {
+            int tag = tag(row.get("tag"));
+            if (tag < 0 || counts[tag] >= 0)
+                continue;
+
+            int count = 0;
+            long[] values = registers[tag];
+            for (Map.Entry<String, Object> entry : row.entrySet()) {
+                int address = address(entry.getKey());
+                if (address == NOT_REGISTER)
+                    continue;
+                int value = SegmentEncoder.parseRegister(entry.getValue());
+                if (address > 0xffff || value < 0)
+                    return false;
+
+                if (count == values.length)
+                    values = registers[tag] = Arrays.copyOf(values, values.length * 2);
+                values[count++] = (long) address << 16 | value;
+            }
+            Arrays.sort(values, 0, count);
+            counts[tag] = count;
+        }
+
+        for (int tag = 0; tag < TAGS.length; tag++) {
+            if (counts[tag] < 0)
+                counts[tag] = 0;
+        }
+        return true;
+    }
+
+    private static int tag(Object tag) {
+        for (int i = 0; i < TAGS.length; i++) {
+            if (TAGS[i].equals(tag))
+                return i;
+        }
+        return -1;
+    }
+
+    /**
+     * @param key 字段名
+     * @return 寄存器地址, 超过2字节时返回大于0xffff的值, 不全是十六进制字符时返回{@link #NOT_REGISTER}
+     */
+    private static int address(String key) {
+        if (key.isEmpty())
+            return NOT_REGISTER;
+
+        int address = 0;
+        for (int i = 0; i < key.length(); i++) {
+            int digit = Character.digit(key.charAt(i), 16);
+            if (digit < 0)
+                return NOT_REGISTER;
+            address = Math.min(address << 4 | digit, 0x10000);
+        }
+        return address;
+    }
+
+}
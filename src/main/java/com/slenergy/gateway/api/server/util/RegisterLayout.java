@@ -0,0 +1,221 @@
+package com.slenergy.gateway.api.server.util;
+
+import io.vertx.core.json.JsonArray;
+import io.vertx.core.json.JsonObject;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.LinkedHashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * class RegisterLayout description
+ * 一个设备类型的寄存器布局, 保存按地址排序的寄存器以及地址连续的区段边界, 编码数据区段时按下标取值, 不需要排序和解析地址
+ * 布局可以从寄存器表文件中加载, 也可以从第一次上报的数据中学习, 学习的布局在寄存器集合变化时重新学习,
+ * 从文件中加载的布局是固定的, 缺少寄存器的数据认为不完整
+ *
+ * <p>
+ * <pre>{@code
+ * RegisterLayout.load("/etc/gateway/registers.json");
+ * RegisterLayout layout = RegisterLayout.get("pcs");
+ * if (layout == null)
+ *     layout = RegisterLayout.learn("pcs", data.keySet());
+ * }</pre>
+ * </p>
+ *
+ * @author Eric Li
+ * @version 1.0
+ *
+ * @since 2026-10-18
+ * @since 1.0
+ */
+public final class RegisterLayout {
+
+    private final static Logger LOGGER = LogManager.getLogger(RegisterLayout.class);
+    /**
+     * 设备类型 -> 寄存器布局
+     */
+    private final static Map<String, RegisterLayout> LAYOUTS = new ConcurrentHashMap<>();
+
+    /**
+     * 按地址排序的寄存器地址, 与数据中的键一致
+     */
+    private final String[] keys;
+    /**
+     * 另一种大小写的寄存器地址(小写的地址为大写, 否则为小写), 数据中的键和布局的大小写不一致时使用, 没有字母的地址和keys中的相同
+     */
+    private final String[] alternateKeys;
+    private final int[] addresses;
+    /**
+     * 每个区段的起始下标, 最后一个元素为寄存器数量
+     */
+    private final int[] segments;
+    private final boolean fixed;
+
+    private RegisterLayout(String[] keys, int[] addresses, int[] segments, boolean fixed) {
+        this.keys = keys;
+        this.alternateKeys = new String[keys.length];
+        for (int i = 0; i < keys.length; i++)
+            alternateKeys[i] = swapCase(keys[i]);
+        this.addresses = addresses;
+        this.segments = segments;
+        this.fixed = fixed;
+    }
+
+    /**
+     * 从寄存器表文件加载布局, 文件格式为 {"设备类型": ["1000-1063", "2000"]}, 地址为十六进制, 可以是单个地址或者地址范围,
+     * 地址范围按起始地址的位数补0, 起始或结束地址中有大写字母时生成大写的地址, 否则为小写,
+     * 上报数据中的键大小写不一致时也可以找到
+     * @param path 寄存器表文件, 为空时不加载
+     */
+    public static void load(String path) {
+        if (path == null)
+            return;
+
+        try {
+            JsonObject table = new JsonObject(Files.readString(Path.of(path)));
+            for (String deviceType : table.fieldNames()) {
+                Set<String> keys = new LinkedHashSet<>();
+                for (Object elem : table.getJsonArray(deviceType, new JsonArray())) {
+                    String range = (String) elem;
+                    int index = range.indexOf('-');
+                    if (index < 0) {
+                        keys.add(range);
+                        continue;
+                    }
+                    String start = range.substring(0, index);
+                    String end = range.substring(index + 1);
+                    String format = "%0" + start.length() + (hasUpperCase(start) || hasUpperCase(end) ? "X" : "x");
+                    for (int address = Integer.parseInt(start, 16); address <= Integer.parseInt(end, 16); address++)
+                        keys.add(String.format(format, address));
+                }
+                RegisterLayout layout = of(keys, true);
+                if (layout == null) {
+                    LOGGER.warn("{}的寄存器表中有超过2字节的地址, 忽略", deviceType);
+                    continue;
+                }
+                LAYOUTS.put(deviceType, layout);
+                LOGGER.info("加载{}的寄存器布局, 寄存器数量: {}, 区段数量: {}", deviceType, layout.size(), layout.segmentCount());
+            }
+        } catch (IOException | RuntimeException e) {
+            LOGGER.warn("无法加载寄存器表{}: {}", path, e.getMessage());
+        }
+    }
+
+    /**
+     * @param deviceType 设备类型
+     * @return 设备类型的寄存器布局, 没有时返回null
+     */
+    public static RegisterLayout get(String deviceType) {
+        return LAYOUTS.get(deviceType);
+    }
+
+    /**
+     * 从上报的数据中学习布局, 替换之前学习的布局
+     * @param deviceType 设备类型
+     * @param keys 数据中的寄存器地址
+     * @return 布局, 有超过2字节的地址时返回null
+     */
+    public static RegisterLayout learn(String deviceType, Collection<String> keys) {
+        RegisterLayout layout = of(keys, false);
+        if (layout != null) {
+            LAYOUTS.put(deviceType, layout);
+            LOGGER.debug("学习{}的寄存器布局, 寄存器数量: {}, 区段数量: {}", deviceType, layout.size(), layout.segmentCount());
+        }
+        return layout;
+    }
+
+    private static RegisterLayout of(Collection<String> keys, boolean fixed) {
+        // 地址 << 32 | 下标, 排序后得到按地址排序的下标
+        String[] source = keys.toArray(new String[0]);
+        long[] sorted = new long[source.length];
+        for (int i = 0; i < source.length; i++) {
+            long address = Long.parseLong(source[i], 16);
+            if (address > 0xffff)
+                return null;
+            sorted[i] = address << 32 | i;
+        }
+        Arrays.sort(sorted);
+
+        String[] ordered = new String[sorted.length];
+        int[] addresses = new int[sorted.length];
+        int[] segments = new int[sorted.length + 1];
+        int count = 0;
+        for (int i = 0; i < sorted.length; i++) {
+            ordered[i] = source[(int) sorted[i]];
+            addresses[i] = (int) (sorted[i] >>> 32);
+            if (i == 0 || addresses[i] != addresses[i - 1] + 1)
+                segments[count++] = i;
+        }
+        segments[count++] = sorted.length;
+        return new RegisterLayout(ordered, addresses, Arrays.copyOf(segments, count), fixed);
+    }
+
+    public int size() {
+        return keys.length;
+    }
+
+    public int segmentCount() {
+        return segments.length - 1;
+    }
+
+    public String key(int index) {
+        return keys[index];
+    }
+
+    /**
+     * @param index 下标
+     * @return 另一种大小写的寄存器地址
+     */
+    public String alternateKey(int index) {
+        return alternateKeys[index];
+    }
+
+    public int address(int index) {
+        return addresses[index];
+    }
+
+    /**
+     * @param segment 区段下标
+     * @return 区段第一个寄存器的下标
+     */
+    public int segmentStart(int segment) {
+        return segments[segment];
+    }
+
+    /**
+     * @param segment 区段下标
+     * @return 区段最后一个寄存器的下一个下标
+     */
+    public int segmentEnd(int segment) {
+        return segments[segment + 1];
+    }
+
+    /**
+     * @return 是否是从寄存器表加载的布局
+     */
+    public boolean fixed() {
+        return fixed;
+    }
+
+    private static boolean hasUpperCase(String s) {
+        for (int i = 0; i < s.length(); i++) {
+            if (Character.isUpperCase(s.charAt(i)))
+                return true;
+        }
+        return false;
+    }
+
+    private static String swapCase(String s) {
+        String lower = s.toLowerCase();
+        return s.equals(lower) ? s.toUpperCase() : lower;
+    }
+
+}
@@ -0,0 +1,176 @@
+package com.slenergy.gateway.api.server.util;
+
+import com.slenergy.gateway.api.server.FrameHeaders;
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.Unpooled;
+
+import java.time.LocalDateTime;
+import java.util.BitSet;
+import java.util.Map;
+
+/**
+ * class SegmentEncoder description
+ * 把设备的寄存器数据编码成上传云端的数据帧, 直接写入可重复使用的{@link ByteBuf}, 只在最后转换一次十六进制字符串
+ * 十六进制字符串和原来按字符串拼接的结果相同: 数据区段个数为大写, 寄存器地址和值保留上报时的大小写, 其他部分为小写
+ * 数据帧格式: 数据采集器序列号(30字节) + 设备序列号(30字节) + 时间戳(6字节) + 设备类型(2字节) + 数据区段个数(1字节) + 数据区段
+ * 每个数据区段: 起始地址(2字节) + 结束地址(2字节) + 连续寄存器的值(每个2字节)
+ * 实例不是线程安全的, 每次编码前调用{@link #begin}
+ *
+ * <p>
+ * <pre>{@code
+ * SegmentEncoder encoder = new SegmentEncoder();
+ * FrameHeaders.Header header = FrameHeaders.getInstance().header("bms", serialNumber);
+ * String frame = encoder.begin(header, LocalDateTime.now()).segments(data, layout) ? encoder.toHex() : null;
+ * }</pre>
+ * </p>
+ *
+ * @author Eric Li
+ * @version 1.0
+ *
+ * @since 2026-10-18
+ * @since 1.0
+ */
+public final class SegmentEncoder {
+
+    private final static char[] LOWER = "0123456789abcdef".toCharArray();
+    private final static char[] UPPER = "0123456789ABCDEF".toCharArray();
+
+    private final ByteBuf buffer;
+    /**
+     * 十六进制字符串中需要大写的字符位置
+     */
+    private final BitSet upper;
+
+    public SegmentEncoder() {
+        buffer = Unpooled.buffer(256);
+        upper = new BitSet();
+    }
+
+    /**
+     * 写入数据帧头部, 之前的内容会被清除
+     * @param header 编码好的序列号前缀和设备类型代码, 设备类型代码小于0时不写入
+     * @param time 数据时间
+     * @return this
+     */
+    public SegmentEncoder begin(FrameHeaders.Header header, LocalDateTime time) {
+        // clear不会释放已经分配的内存
+        buffer.clear();
+        upper.clear();
+        header(buffer, header, time);
+        return this;
+    }
+
+    /**
+     * 写入序列号前缀, 时间戳(6字节)以及设备类型代码
+     * @param buffer 写入的位置
+     * @param header 帧头部, 设备类型代码小于0时不写入
+     * @param time 数据时间
+     */
+    static void header(ByteBuf buffer, FrameHeaders.Header header, LocalDateTime time) {
+        buffer.writeBytes(header.prefix());
+        buffer.writeByte(time.getYear() - 2000)
+                .writeByte(time.getMonthValue())
+                .writeByte(time.getDayOfMonth())
+                .writeByte(time.getHour())
+                .writeByte(time.getMinute())
+                .writeByte(time.getSecond());
+        if (header.typeCode() >= 0)
+            buffer.writeShort(header.typeCode());
+    }
+
+    /**
+     * 按寄存器布局写入数据区段个数和数据区段, 按下标取值, 不需要排序和解析地址
+     * @param data 寄存器地址(十六进制) -> 寄存器的值(4位十六进制)
+     * @param layout 寄存器布局
+     * @return 数据是否完整, 缺少布局中的寄存器或者值不是4位十六进制时返回false
+     */
+    public boolean segments(Map<String, Object> data, RegisterLayout layout) {
+        // 数据区段个数原来是String.format("%02X")
+        upper.set(buffer.writerIndex() * 2, buffer.writerIndex() * 2 + 2);
+        buffer.writeByte(layout.segmentCount());
+        for (int segment = 0; segment < layout.segmentCount(); segment++) {
+            int start = layout.segmentStart(segment);
+            int end = layout.segmentEnd(segment);
+            int addresses = buffer.writerIndex();
+            buffer.writeShort(layout.address(start)).writeShort(layout.address(end - 1));
+            for (int i = start; i < end; i++) {
+                String key = layout.key(i);
+                Object value = data.get(key);
+                // 数据中的键和布局的大小写不一致, 例如布局为10a0, 数据为10A0
+                if (value == null) {
+                    key = layout.alternateKey(i);
+                    value = data.get(key);
+                }
+                // 起始地址和结束地址原来是数据中的键
+                if (i == start)
+                    markUpper(addresses, key);
+                if (i == end - 1)
+                    markUpper(addresses + 2, key);
+                int index = buffer.writerIndex();
+                if (!register(value))
+                    return false;
+                markUpper(index, (String) value);
+            }
+        }
+        return true;
+    }
+
+    /**
+     * @return 编码结果的十六进制字符串, 只在需要文本的地方调用
+     */
+    public String toHex() {
+        char[] hex = new char[buffer.readableBytes() * 2];
+        for (int i = 0; i < buffer.readableBytes(); i++) {
+            int b = buffer.getUnsignedByte(buffer.readerIndex() + i);
+            hex[i * 2] = (upper.get(i * 2) ? UPPER : LOWER)[b >>> 4];
+            hex[i * 2 + 1] = (upper.get(i * 2 + 1) ? UPPER : LOWER)[b & 0x0f];
+        }
+        return new String(hex);
+    }
+
+    /**
+     * 记录十六进制文本中大写字母的位置, 不足4位时按右对齐
+     * @param index 文本对应的2个字节在buffer中的位置
+     * @param text 最多4位的十六进制
+     */
+    private void markUpper(int index, String text) {
+        int offset = 4 - text.length();
+        for (int i = Math.max(0, -offset); i < text.length(); i++) {
+            if (Character.isUpperCase(text.charAt(i)))
+                upper.set(index * 2 + offset + i);
+        }
+    }
+
+    /**
+     * 写入一个寄存器的值
+     * @param value 4位十六进制字符串
+     * @return 是否是4位十六进制
+     */
+    private boolean register(Object value) {
+        int register = parseRegister(value);
+        if (register < 0)
+            return false;
+
+        buffer.writeShort(register);
+        return true;
+    }
+
+    /**
+     * @param value 4位十六进制字符串
+     * @return 寄存器的值, 不是4位十六进制时返回-1
+     */
+    static int parseRegister(Object value) {
+        if (!(value instanceof String text) || text.length() != 4)
+            return -1;
+
+        int register = 0;
+        for (int i = 0; i < 4; i++) {
+            int digit = Character.digit(text.charAt(i), 16);
+            if (digit < 0)
+                return -1;
+            register = register << 4 | digit;
+        }
+        return register;
+    }
+
+}
@@ -0,0 +1,122 @@
+package com.slenergy.gateway.api.server;
+
+import com.slenergy.gateway.api.server.schema.DeviceRealTimeData;
+import com.slenergy.gateway.database.influxdb.InfluxConnection;
+import org.junit.Test;
+
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertThrows;
+
+/**
+ * class HistoryQueryTest description
+ *
+ * @author Eric Li
+ * @version 1.0
+ *
+ * @since 2026-10-18
+ * @since 1.0
+ */
+public class HistoryQueryTest {
+
+    private final static Instant T = Instant.parse("2026-10-18T08:00:00Z");
+    /**
+     * 按时间倒序, c1 c2 c3的时间相同
+     */
+    private final static List<Map<String, Object>> ROWS = List.of(
+            row("a", 5), row("b", 4), row("c1", 3), row("c2", 3), row("c3", 3), row("d", 2), row("e", 1));
+
+    private static Map<String, Object> row(String id, int seconds) {
+        return Map.of("id", id, "_time", T.plusSeconds(seconds));
+    }
+
+    /**
+     * 按range的stop和limit返回ROWS中的行, 和实时数据库的结果相同
+     */
+    private static class FakeConnection extends InfluxConnection {
+
+        private final static Pattern STOP = Pattern.compile("stop: time\\(v: \"([^\"]+)\"\\)");
+        private final static Pattern LIMIT = Pattern.compile("limit\\(n: (\\d+)\\)");
+
+        FakeConnection() {
+            super(null, null, null, null);
+        }
+
+        @Override
+        public List<Map<String, Object>> query(String query) {
+            Matcher stop = STOP.matcher(query);
+            Instant end = stop.find() ? Instant.parse(stop.group(1)) : null;
+            Matcher limit = LIMIT.matcher(query);
+            int n = limit.find() ? Integer.parseInt(limit.group(1)) : Integer.MAX_VALUE;
+            List<Map<String, Object>> rows = new ArrayList<>();
+            for (Map<String, Object> row : ROWS) {
+                if (rows.size() < n && (end == null || ((Instant) row.get("_time")).isBefore(end)))
+                    rows.add(row);
+            }
+            return rows;
+        }
+
+    }
+
+    private static HistoryQuery query() {
+        DeviceRealTimeData data = new DeviceRealTimeData("inverter", "SN-1", "inverter", "-1h", null, null, null, null, null, null);
+        return new HistoryQuery(new FakeConnection(), "bucket", data, 1000);
+    }
+
+    private static List<String> ids(List<Map<String, Object>> rows) {
+        List<String> ids = new ArrayList<>();
+        for (Map<String, Object> row : rows)
+            ids.add((String) row.get("id"));
+        return ids;
+    }
+
+    @Test
+    public void testSkipAfterEqualTimestamps() {
+        HistoryQuery query = query();
+        HistoryQuery.Page page = query.fetch(null, 3);
+        assertEquals(List.of("a", "b", "c1"), ids(page.rows()));
+        assertEquals(new HistoryQuery.Cursor(T.plusSeconds(3), 1), HistoryQuery.Cursor.parse(page.cursor()));
+
+        // 下一页仍然从c1的时间开始查, 跳过已经返回的c1
+        page = query.fetch(HistoryQuery.Cursor.parse(page.cursor()), 3);
+        assertEquals(List.of("c2", "c3", "d"), ids(page.rows()));
+
+        page = query.fetch(HistoryQuery.Cursor.parse(page.cursor()), 3);
+        assertEquals(List.of("e"), ids(page.rows()));
+        assertNull(page.cursor());
+    }
+
+    @Test
+    public void testEveryPageSize() {
+        for (int size = 1; size <= ROWS.size() + 1; size++) {
+            HistoryQuery query = query();
+            List<String> all = new ArrayList<>();
+            HistoryQuery.Cursor cursor = null;
+            do {
+                HistoryQuery.Page page = query.fetch(cursor, size);
+                all.addAll(ids(page.rows()));
+                cursor = HistoryQuery.Cursor.parse(page.cursor());
+            } while (cursor != null);
+            assertEquals("page size " + size, ids(ROWS), all);
+        }
+    }
+
+    @Test
+    public void testCursorToken() {
+        HistoryQuery.Cursor cursor = new HistoryQuery.Cursor(Instant.parse("2026-10-18T08:00:00.123456789Z"), 3);
+        assertEquals(cursor, HistoryQuery.Cursor.parse(cursor.token()));
+        assertNull(HistoryQuery.Cursor.parse(null));
+        assertNull(HistoryQuery.Cursor.parse(""));
+
+        assertThrows(IllegalArgumentException.class, () -> HistoryQuery.Cursor.parse("not a cursor"));
+        assertThrows(IllegalArgumentException.class, () -> HistoryQuery.Cursor.parse(new HistoryQuery.Cursor(T, 0).token()));
+    }
+
+}
@@ -0,0 +1,121 @@
+package com.slenergy.gateway.api.server;
+
+import io.vertx.core.buffer.Buffer;
+import io.vertx.core.json.JsonObject;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * class ResponseCacheTest description
+ *
+ * @author Eric Li
+ * @version 1.0
+ *
+ * @since 2026-10-18
+ * @since 1.0
+ */
+public class ResponseCacheTest {
+
+    private final ResponseCache cache = ResponseCache.getInstance();
+
+    @Before
+    public void setUp() {
+        cache.initialize(null);
+    }
+
+    @After
+    public void tearDown() {
+        cache.initialize(null);
+    }
+
+    private static ResponseCache.Key key(String deviceSN, Integer limit) {
+        return new ResponseCache.Key("inverter", "inverter", deviceSN, "-1h", "now()", limit, null, null, null);
+    }
+
+    @Test
+    public void testHitUntilInvalidated() {
+        ResponseCache.Key key = key("CACHE-A", 10);
+        ResponseCache.Entry entry = cache.put(key, cache.version("CACHE-A"), Buffer.buffer("[1,2,3]"));
+        assertSame(entry, cache.get(key));
+
+        // 其他设备的新数据不影响
+        cache.invalidate("CACHE-B");
+        assertSame(entry, cache.get(key));
+
+        cache.invalidate("CACHE-A");
+        assertNull(cache.get(key));
+    }
+
+    @Test
+    public void testWriteDuringQueryIsNotCached() {
+        ResponseCache.Key key = key("CACHE-C", 10);
+        long version = cache.version("CACHE-C");
+        cache.invalidate("CACHE-C");
+        ResponseCache.Entry entry = cache.put(key, version, Buffer.buffer("[]"));
+        // 仍然返回给本次请求, 但不缓存
+        assertNotNull(entry);
+        assertNull(cache.get(key));
+    }
+
+    @Test
+    public void testEtag() {
+        ResponseCache.Entry first = cache.put(key("CACHE-D", 1), 0, Buffer.buffer("[1]"));
+        ResponseCache.Entry same = cache.put(key("CACHE-D", 2), 0, Buffer.buffer("[1]"));
+        ResponseCache.Entry other = cache.put(key("CACHE-D", 3), 0, Buffer.buffer("[2]"));
+        assertEquals(first.etag(), same.etag());
+        assertNotEquals(first.etag(), other.etag());
+        assertTrue(first.etag().startsWith("\"") && first.etag().endsWith("\""));
+    }
+
+    @Test
+    public void testNotModified() {
+        ResponseCache.Entry entry = cache.put(key("CACHE-E", 1), 0, Buffer.buffer("[1]"));
+        assertTrue(cache.notModified(entry, entry.etag()));
+        assertTrue(cache.notModified(entry, "\"other\", W/" + entry.etag()));
+        assertTrue(cache.notModified(entry, "*"));
+        assertFalse(cache.notModified(entry, "\"other\""));
+        assertFalse(cache.notModified(entry, null));
+    }
+
+    @Test
+    public void testEviction() {
+        cache.initialize(new JsonObject().put("maxEntries", 2).put("maxBytes", 1024));
+        ResponseCache.Key a = key("CACHE-F", 1);
+        ResponseCache.Key b = key("CACHE-F", 2);
+        ResponseCache.Key c = key("CACHE-F", 3);
+        long version = cache.version("CACHE-F");
+        cache.put(a, version, Buffer.buffer("[1]"));
+        cache.put(b, version, Buffer.buffer("[2]"));
+        // 访问a之后b是最久没有访问的
+        cache.get(a);
+        cache.put(c, version, Buffer.buffer("[3]"));
+        assertNotNull(cache.get(a));
+        assertNull(cache.get(b));
+        assertNotNull(cache.get(c));
+
+        // 超过总大小的四分之一时不缓存
+        ResponseCache.Key large = key("CACHE-F", 4);
+        cache.put(large, version, Buffer.buffer(new byte[300]));
+        assertNull(cache.get(large));
+        assertEquals(2, (int) cache.metrics().getInteger("entries"));
+    }
+
+    @Test
+    public void testTtl() throws InterruptedException {
+        cache.initialize(new JsonObject().put("ttl", 0));
+        ResponseCache.Key key = key("CACHE-G", 1);
+        cache.put(key, cache.version("CACHE-G"), Buffer.buffer("[1]"));
+        Thread.sleep(2);
+        assertNull(cache.get(key));
+    }
+
+}
@@ -0,0 +1,144 @@
+package com.slenergy.gateway.api.server.device;
+
+import org.junit.Test;
+
+import java.lang.invoke.MethodHandles;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * class AttributeTableTest description
+ *
+ * @author Eric Li
+ * @version 1.0
+ *
+ * @since 2026-10-18
+ * @since 1.0
+ */
+public class AttributeTableTest {
+
+    public static class Parent {
+        public double power;
+
+        public void setPower(double power) {
+            this.power = power;
+        }
+    }
+
+    public static class Nested {
+        public int level;
+
+        public void setLevel(int level) {
+            this.level = level;
+        }
+    }
+
+    public static class Target extends Parent {
+        public long count;
+        public String name;
+        public Integer boxed;
+        public int mode;
+        public final Nested nested = new Nested();
+
+        public void setCount(long count) {
+            this.count = count;
+        }
+
+        public void setName(String name) {
+            this.name = name;
+        }
+
+        public void setBoxed(Integer boxed) {
+            this.boxed = boxed;
+        }
+
+        /**
+         * 有返回值的重载, 优先使用没有返回值的setMode(int)
+         */
+        public String setMode(String mode) {
+            this.mode = -1;
+            return "ignored";
+        }
+
+        public void setMode(int mode) {
+            this.mode = mode;
+        }
+
+        public Nested getNested() {
+            return nested;
+        }
+    }
+
+    public static class Ambiguous {
+        public void setValue(int value) {}
+
+        public void setValue(String value) {}
+    }
+
+    private final static AttributeTable<Parent> PARENT = AttributeTable.builder(Parent.class, MethodHandles.lookup())
+            .properties("power")
+            .build();
+    private final static AttributeTable<Nested> NESTED = AttributeTable.builder(Nested.class, MethodHandles.lookup())
+            .properties("level")
+            .build();
+    private final static AttributeTable<Target> TARGET = AttributeTable.builder(Target.class, MethodHandles.lookup())
+            .inherit(PARENT)
+            .properties("count", "name", "boxed", "mode")
+            .property("alias", "setName")
+            .delegate("nested.", NESTED, Target::getNested)
+            .scale(1000, "power")
+            .build();
+
+    @Test
+    public void testNumbersAreConverted() {
+        Target target = new Target();
+        assertTrue(TARGET.apply(target, "count", 5));
+        assertTrue(TARGET.apply(target, "mode", 3.9));
+        assertTrue(TARGET.apply(target, "boxed", 7));
+        assertEquals(5L, target.count);
+        assertEquals(3, target.mode);
+        assertEquals(Integer.valueOf(7), target.boxed);
+    }
+
+    @Test
+    public void testInheritedScaledAndDelegated() {
+        Target target = new Target();
+        TARGET.apply(target, "power", 1.5);
+        TARGET.apply(target, "alias", "pcs");
+        TARGET.apply(target, "nested.level", 2L);
+        assertEquals(1500.0, target.power, 1e-9);
+        assertEquals("pcs", target.name);
+        assertEquals(2, target.nested.level);
+    }
+
+    @Test
+    public void testUnknownField() {
+        Target target = new Target();
+        assertFalse(TARGET.apply(target, "missing", 1));
+        assertFalse(TARGET.contains("missing"));
+        assertEquals(1L, (long) AttributeTable.unknownFields().getLong("Target.missing"));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testAmbiguousOverloadsAreRejected() {
+        AttributeTable.builder(Ambiguous.class, MethodHandles.lookup()).properties("value");
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testMissingSetter() {
+        AttributeTable.builder(Target.class, MethodHandles.lookup()).properties("unknown");
+    }
+
+    @Test
+    public void testPutOverridesAmbiguousSetter() {
+        int[] values = new int[1];
+        AttributeTable<Ambiguous> table = AttributeTable.builder(Ambiguous.class, MethodHandles.lookup())
+                .put("value", (t, v) -> values[0] = AttributeTable.toInt(v))
+                .build();
+        table.apply(new Ambiguous(), "value", 4);
+        assertEquals(4, values[0]);
+    }
+
+}
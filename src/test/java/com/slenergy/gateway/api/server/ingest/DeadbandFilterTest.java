@@ -0,0 +1,170 @@
+package com.slenergy.gateway.api.server.ingest;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonParser;
+import io.vertx.core.json.JsonObject;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+
+/**
+ * class DeadbandFilterTest description
+ *
+ * @author Eric Li
+ * @version 1.0
+ *
+ * @since 2026-10-18
+ * @since 1.0
+ */
+public class DeadbandFilterTest {
+
+    /**
+     * 记录传给被包装回调的字段
+     */
+    private final List<String> fields = new ArrayList<>();
+    private final IngestListener recorder = new IngestListener() {
+        @Override
+        public void begin(String deviceType, String serialNumber, String deviceName, long timestamp, String timeUnit) {}
+
+        @Override
+        public void add(String tag, String subTag, String field, Object value) {
+            fields.add(field + "=" + value);
+        }
+
+        @Override
+        public void end() {}
+
+        @Override
+        public void abort() {}
+    };
+
+    @Before
+    public void setUp() {
+        DeadbandFilter.getInstance().initialize(new JsonObject()
+                .put("enabled", true)
+                .put("absolute", 0.5)
+                .put("heartbeat", 60));
+    }
+
+    @After
+    public void tearDown() {
+        DeadbandFilter.getInstance().initialize(null);
+    }
+
+    private List<String> report(DeadbandFilter.Filter filter, String deviceType, long seconds, String field, Object value) {
+        fields.clear();
+        filter.begin(deviceType, "SN1", "device", seconds, "s");
+        filter.add("tag", null, field, value);
+        filter.end();
+        return List.copyOf(fields);
+    }
+
+    @Test
+    public void testDeadbandAndHeartbeat() {
+        DeadbandFilter.Filter filter = DeadbandFilter.getInstance().wrap(recorder);
+        assertEquals(List.of("power=10.0"), report(filter, "inverter", 1000, "power", 10.0));
+        // 同一请求中和暂存的值比较
+        assertEquals(List.of(), report(filter, "inverter", 1001, "power", 10.4));
+        assertEquals(List.of("power=10.6"), report(filter, "inverter", 1002, "power", 10.6));
+        filter.commit();
+
+        DeadbandFilter.Filter next = DeadbandFilter.getInstance().wrap(recorder);
+        assertEquals(List.of(), report(next, "inverter", 1010, "power", 10.6));
+        // 补传的旧数据直接写入
+        assertEquals(List.of("power=10.6"), report(next, "inverter", 900, "power", 10.6));
+        // 超过心跳间隔时强制写入
+        assertEquals(List.of("power=10.6"), report(next, "inverter", 1062, "power", 10.6));
+        // 字符串只比较是否相同
+        assertEquals(List.of("status=on"), report(next, "inverter", 1063, "status", "on"));
+        assertEquals(List.of(), report(next, "inverter", 1064, "status", "on"));
+        assertEquals(List.of("status=off"), report(next, "inverter", 1065, "status", "off"));
+    }
+
+    @Test
+    public void testRetryAfterRejectIsNotSuppressed() {
+        DeadbandFilter.Filter first = DeadbandFilter.getInstance().wrap(recorder);
+        assertEquals(List.of("power=10.0"), report(first, "inverter", 1000, "power", 10.0));
+        // 写入缓冲区已满, 请求被拒绝
+        first.rollback();
+
+        DeadbandFilter.Filter retry = DeadbandFilter.getInstance().wrap(recorder);
+        assertEquals(List.of("power=10.0"), report(retry, "inverter", 1000, "power", 10.0));
+        retry.commit();
+
+        DeadbandFilter.Filter duplicate = DeadbandFilter.getInstance().wrap(recorder);
+        assertEquals(List.of(), report(duplicate, "inverter", 1000, "power", 10.0));
+    }
+
+    @Test
+    public void testCommitKeepsNewerValue() {
+        DeadbandFilter.Filter slow = DeadbandFilter.getInstance().wrap(recorder);
+        DeadbandFilter.Filter fast = DeadbandFilter.getInstance().wrap(recorder);
+        report(slow, "inverter", 1000, "power", 10.0);
+        report(fast, "inverter", 1005, "power", 20.0);
+        fast.commit();
+        slow.commit();
+
+        DeadbandFilter.Filter next = DeadbandFilter.getInstance().wrap(recorder);
+        assertEquals(List.of(), report(next, "inverter", 1006, "power", 20.0));
+    }
+
+    @Test
+    public void testBulkMalformedMiddleLine() throws IOException {
+        PointEncoder encoder = new PointEncoder();
+        DeadbandFilter.Filter filter = DeadbandFilter.getInstance().wrap(encoder);
+        IngestListener listener = IngestListener.compose(LatestValueStore.getInstance().listener(), filter);
+        String[] lines = {
+                "{\"deviceType\":\"inverter\",\"serialNumber\":\"SN1\",\"timestamp\":1000,\"timeUnit\":\"s\",\"timeSeries\":[{\"tag\":\"tag\",\"field\":\"power\",\"value\":10.0}]}",
+                // 第一个字段已经回调之后才解析失败
+                "{\"deviceType\":\"inverter\",\"serialNumber\":\"SN1\",\"timestamp\":1001,\"timeUnit\":\"s\",\"timeSeries\":[{\"tag\":\"tag\",\"field\":\"power\",\"value\":20.0},{\"field\":}]}",
+                "{\"deviceType\":\"inverter\",\"serialNumber\":\"SN1\",\"timestamp\":1002,\"timeUnit\":\"s\",\"timeSeries\":[{\"tag\":\"tag\",\"field\":\"power\",\"value\":20.0}]}"
+        };
+        int errors = 0;
+        for (String line : lines) {
+            try (JsonParser json = new JsonFactory().createParser(line)) {
+                json.nextToken();
+                RealTimeDataDecoder.decode(json, listener);
+            } catch (IOException e) {
+                listener.abort();
+                errors++;
+            }
+        }
+        assertEquals(1, errors);
+
+        // 解析失败的一行没有暂存, 第三行的值不会被当成重复值过滤掉
+        List<DataPoint> points = encoder.takePoints();
+        assertEquals(2, points.size());
+        assertEquals(10.0, points.get(0).fields().get("power"));
+        assertEquals(20.0, points.get(1).fields().get("power"));
+        filter.commit();
+
+        DeadbandFilter.Filter next = DeadbandFilter.getInstance().wrap(recorder);
+        assertEquals(List.of(), report(next, "inverter", 1003, "power", 20.0));
+    }
+
+    @Test
+    public void testEmsDevicesAreNotFiltered() {
+        DeadbandFilter.Filter filter = DeadbandFilter.getInstance().wrap(recorder);
+        report(filter, "pcs", 1000, "power", 10.0);
+        filter.commit();
+
+        DeadbandFilter.Filter next = DeadbandFilter.getInstance().wrap(recorder);
+        assertEquals(List.of("power=10.0"), report(next, "pcs", 1001, "power", 10.0));
+    }
+
+    @Test
+    public void testDisabled() {
+        DeadbandFilter.getInstance().initialize(null);
+        DeadbandFilter.Filter filter = DeadbandFilter.getInstance().wrap(recorder);
+        report(filter, "inverter", 1000, "power", 10.0);
+        filter.commit();
+        assertEquals(List.of("power=10.0"), report(filter, "inverter", 1001, "power", 10.0));
+    }
+
+}
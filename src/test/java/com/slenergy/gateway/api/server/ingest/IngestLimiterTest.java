@@ -0,0 +1,95 @@
+package com.slenergy.gateway.api.server.ingest;
+
+import io.vertx.core.json.JsonObject;
+import org.junit.After;
+import org.junit.Test;
+
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * class IngestLimiterTest description
+ *
+ * @author Eric Li
+ * @version 1.0
+ *
+ * @since 2026-10-18
+ * @since 1.0
+ */
+public class IngestLimiterTest {
+
+    private final IngestLimiter limiter = IngestLimiter.getInstance();
+
+    private void configure(double rate, double burst, int maxDevices) {
+        limiter.initialize(new JsonObject().put("deviceRate", rate).put("deviceBurst", burst).put("maxDevices", maxDevices));
+    }
+
+    @After
+    public void tearDown() {
+        limiter.initialize(null);
+    }
+
+    @Test
+    public void testBurstAndRefill() {
+        configure(2.0, 3.0, 16);
+        long now = System.nanoTime();
+        for (int i = 0; i < 3; i++)
+            assertEquals(0, limiter.acquire("A", now));
+        // 令牌用完, 每秒补充2个, 需要等待0.5秒, 向上取整为1秒
+        assertEquals(1, limiter.acquire("A", now));
+        // 0.5秒之后补充1个
+        assertEquals(0, limiter.acquire("A", now + TimeUnit.MILLISECONDS.toNanos(500)));
+        assertEquals(1, limiter.acquire("A", now + TimeUnit.MILLISECONDS.toNanos(500)));
+        // 补充的令牌不超过burst
+        long later = now + TimeUnit.SECONDS.toNanos(60);
+        for (int i = 0; i < 3; i++)
+            assertEquals(0, limiter.acquire("A", later));
+        assertEquals(1, limiter.acquire("A", later));
+    }
+
+    @Test
+    public void testWaitRoundsUpToSeconds() {
+        configure(0.2, 1.0, 16);
+        long now = System.nanoTime();
+        assertEquals(0, limiter.acquire("A", now));
+        assertEquals(5, limiter.acquire("A", now));
+        // 其他设备不受影响
+        assertEquals(0, limiter.acquire("B", now));
+    }
+
+    @Test
+    public void testIdleBucketsAreEvicted() {
+        configure(10.0, 1.0, 2);
+        long now = System.nanoTime();
+        limiter.acquire("A", now);
+        limiter.acquire("B", now);
+        // 还没有补满, 不会被清理, 令牌桶可以暂时超过上限
+        limiter.acquire("C", now);
+        assertEquals(3, (int) limiter.metrics().getInteger("devices"));
+
+        // 超过清理间隔, A, B, C都已经补满
+        limiter.acquire("D", now + TimeUnit.SECONDS.toNanos(5));
+        assertEquals(1, (int) limiter.metrics().getInteger("devices"));
+    }
+
+    @Test
+    public void testRateLimitedIsBounded() {
+        configure(1.0, 1.0, 2);
+        long now = System.nanoTime();
+        for (String sn : new String[] {"A", "B", "C"}) {
+            limiter.acquire(sn, now);
+            assertTrue(limiter.acquire(sn, now) > 0);
+        }
+        JsonObject metrics = limiter.metrics();
+        assertEquals(2, metrics.getJsonObject("rateLimited").size());
+        assertTrue(metrics.getLong("rateLimitedTotal") >= 3);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testRateMustBePositive() {
+        configure(0.0, 1.0, 16);
+    }
+
+}
@@ -0,0 +1,82 @@
+package com.slenergy.gateway.api.server.ingest;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+
+/**
+ * class LatestValueStoreTest description
+ *
+ * @author Eric Li
+ * @version 1.0
+ *
+ * @since 2026-10-18
+ * @since 1.0
+ */
+public class LatestValueStoreTest {
+
+    private final LatestValueStore store = LatestValueStore.getInstance();
+
+    @Before
+    public void setUp() {
+        store.initialize(null);
+    }
+
+    private void report(String serialNumber, long time, Map<String, Object> fields) {
+        IngestListener listener = store.listener();
+        listener.begin("pcs", serialNumber, "pcs-" + serialNumber, time, "ms");
+        fields.forEach((field, value) -> listener.add("pcsInfo", "runtimeInformation", field, value));
+        listener.end();
+    }
+
+    private static Map<String, Object> bySerialNumber(List<Map<String, Object>> rows, String serialNumber) {
+        return rows.stream().filter(row -> serialNumber.equals(row.get("deviceSN"))).findFirst().orElse(null);
+    }
+
+    @Test
+    public void testDevicesAreKeptApart() {
+        long now = System.currentTimeMillis();
+        report("A", now, Map.of("0100", "0001"));
+        report("B", now + 1, Map.of("0200", "0002"));
+
+        List<Map<String, Object>> rows = store.query("pcs", "runtimeInformation", "-30s");
+        assertEquals(2, rows.size());
+        // 按时间倒序
+        assertEquals("B", rows.get(0).get("deviceSN"));
+        assertEquals("0001", bySerialNumber(rows, "A").get("0100"));
+        assertFalse(bySerialNumber(rows, "A").containsKey("0200"));
+        assertEquals("pcs-B", bySerialNumber(rows, "B").get("deviceName"));
+    }
+
+    @Test
+    public void testReportReplacesFields() {
+        long now = System.currentTimeMillis();
+        report("A", now, Map.of("0100", "0001", "0101", "0002"));
+        report("A", now + 1, Map.of("0100", "0003"));
+
+        Map<String, Object> row = store.query("pcs", "runtimeInformation", "-30s").get(0);
+        assertEquals("0003", row.get("0100"));
+        assertFalse(row.containsKey("0101"));
+    }
+
+    @Test
+    public void testBackfillDoesNotOverwrite() {
+        long now = System.currentTimeMillis();
+        report("A", now, Map.of("0100", "0001"));
+        report("A", now - 1000, Map.of("0100", "0009"));
+
+        assertEquals("0001", store.query("pcs", "runtimeInformation", "-30s").get(0).get("0100"));
+    }
+
+    @Test
+    public void testUnknownMeasurement() {
+        assertNull(store.query("bms", "runtimeInformation", "-30s"));
+    }
+
+}
@@ -0,0 +1,70 @@
+package com.slenergy.gateway.api.server.ingest;
+
+import org.junit.Test;
+
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.Assert.assertEquals;
+
+/**
+ * class LineProtocolTest description
+ *
+ * @author Eric Li
+ * @version 1.0
+ *
+ * @since 2026-10-18
+ * @since 1.0
+ */
+public class LineProtocolTest {
+
+    private static DataPoint point(String measurement, Map<String, String> tags, Map<String, Object> fields, long timestamp) {
+        return new DataPoint(PointTemplate.create(measurement, tags), fields, timestamp);
+    }
+
+    private static List<DataPoint> roundTrip(DataPoint... points) {
+        StringBuilder sb = new StringBuilder();
+        for (DataPoint point : points)
+            LineProtocol.append(sb, point);
+        return LineProtocol.parse(sb);
+    }
+
+    @Test
+    public void testRoundTrip() {
+        Map<String, Object> fields = new LinkedHashMap<>();
+        fields.put("power", 12.5);
+        fields.put("count", 42L);
+        fields.put("online", true);
+        fields.put("status", "say \"hi\"\\ok,a=b c\nnext line");
+        DataPoint point = point("inverter data", Map.of("deviceSN", "SN,001", "tag", "a=b"), fields, 1760000000123456789L);
+        DataPoint other = point("bms", Map.of("deviceSN", "B1"), Map.of("soc", 95L), 1760000000000000000L);
+
+        List<DataPoint> parsed = roundTrip(point, other);
+        assertEquals(2, parsed.size());
+        assertEquals(point, parsed.get(0));
+        assertEquals(other, parsed.get(1));
+    }
+
+    @Test
+    public void testIntegerWidensToLong() {
+        DataPoint point = point("m", Map.of("deviceSN", "A"), Map.of("value", 7), 1L);
+        assertEquals(7L, roundTrip(point).get(0).fields().get("value"));
+    }
+
+    @Test
+    public void testNewlineInNames() {
+        DataPoint point = point("meas\nure", Map.of("deviceSN", "A\nB", "tag", "t"), Map.of("field\nname", 1L, "other", 2L), 3L);
+        DataPoint parsed = roundTrip(point).get(0);
+        assertEquals("meas ure", parsed.measurement());
+        assertEquals(Map.of("deviceSN", "A B", "tag", "t"), parsed.tags());
+        assertEquals(Map.of("field name", 1L, "other", 2L), parsed.fields());
+        assertEquals(3L, parsed.timestamp());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testMalformedLine() {
+        LineProtocol.parse("measurement value=1i");
+    }
+
+}
@@ -0,0 +1,91 @@
+package com.slenergy.gateway.api.server.ingest;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+
+/**
+ * class StagedListenerTest description
+ *
+ * @author Eric Li
+ * @version 1.0
+ *
+ * @since 2026-10-18
+ * @since 1.0
+ */
+public class StagedListenerTest {
+
+    /**
+     * 记录传给被包装回调的上报
+     */
+    private final List<String> events = new ArrayList<>();
+    private final IngestListener recorder = new IngestListener() {
+        @Override
+        public void begin(String deviceType, String serialNumber, String deviceName, long timestamp, String timeUnit) {
+            events.add("begin " + serialNumber + " " + timestamp);
+        }
+
+        @Override
+        public void add(String tag, String subTag, String field, Object value) {
+            events.add(field + "=" + value);
+        }
+
+        @Override
+        public void end() {
+            events.add("end");
+        }
+
+        @Override
+        public void abort() {
+            events.add("abort");
+        }
+    };
+
+    private static void report(IngestListener listener, String serialNumber, long timestamp, double power) {
+        listener.begin("inverter", serialNumber, "inverter", timestamp, "s");
+        listener.add("tag", null, "power", power);
+        listener.end();
+    }
+
+    @Test
+    public void testCommitReplaysInOrder() {
+        StagedListener staged = new StagedListener(recorder);
+        report(staged, "SN1", 1000, 10.0);
+        report(staged, "SN2", 1001, 20.0);
+        assertEquals(List.of(), events);
+        assertEquals(2, staged.size());
+
+        staged.commit();
+        assertEquals(List.of("begin SN1 1000", "power=10.0", "end", "begin SN2 1001", "power=20.0", "end"), events);
+        assertEquals(0, staged.size());
+        // 已经提交的上报不会再回放
+        staged.commit();
+        assertEquals(6, events.size());
+    }
+
+    @Test
+    public void testRollbackDropsReports() {
+        StagedListener staged = new StagedListener(recorder);
+        report(staged, "SN1", 1000, 10.0);
+        staged.rollback();
+        staged.commit();
+        assertEquals(List.of(), events);
+    }
+
+    @Test
+    public void testAbortDropsCurrentReport() {
+        StagedListener staged = new StagedListener(recorder);
+        report(staged, "SN1", 1000, 10.0);
+        staged.begin("inverter", "SN1", "inverter", 1001, "s");
+        staged.add("tag", null, "power", 20.0);
+        staged.abort();
+        report(staged, "SN1", 1002, 30.0);
+
+        staged.commit();
+        assertEquals(List.of("begin SN1 1000", "power=10.0", "end", "begin SN1 1002", "power=30.0", "end"), events);
+    }
+
+}
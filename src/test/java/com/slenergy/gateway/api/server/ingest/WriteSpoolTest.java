@@ -0,0 +1,152 @@
+package com.slenergy.gateway.api.server.ingest;
+
+import io.vertx.core.json.JsonObject;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Stream;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * class WriteSpoolTest description
+ *
+ * @author Eric Li
+ * @version 1.0
+ *
+ * @since 2026-10-18
+ * @since 1.0
+ */
+public class WriteSpoolTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    /**
+     * 分段文件很小, 每一批数据都写入单独的分段文件
+     */
+    private WriteSpool open() throws IOException {
+        return new WriteSpool(new JsonObject().put("dir", folder.getRoot().getPath()).put("segmentSize", 16));
+    }
+
+    private static List<DataPoint> batch(long value) {
+        return List.of(new DataPoint(PointTemplate.create("bms", Map.of("deviceSN", "B1")), Map.of("soc", value), value));
+    }
+
+    private List<Path> files(String suffix) throws IOException {
+        try (Stream<Path> stream = Files.list(folder.getRoot().toPath())) {
+            return stream.filter(path -> path.toString().endsWith(suffix)).sorted().toList();
+        }
+    }
+
+    /**
+     * 把第一条记录的长度改成超出文件的值
+     */
+    private static void corruptFirstRecord(Path file) throws IOException {
+        try (RandomAccessFile raf = new RandomAccessFile(file.toFile(), "rw")) {
+            raf.seek(8);
+            raf.writeInt(Integer.MAX_VALUE);
+        }
+    }
+
+    /**
+     * 保留第一条记录的长度, 把内容改成无法解析的行协议
+     */
+    private static void garbleFirstRecord(Path file) throws IOException {
+        try (RandomAccessFile raf = new RandomAccessFile(file.toFile(), "rw")) {
+            raf.seek(8);
+            byte[] data = new byte[raf.readInt()];
+            Arrays.fill(data, (byte) 'x');
+            raf.seek(16);
+            raf.write(data);
+        }
+    }
+
+    @Test
+    public void testReplayAfterRestart() throws IOException {
+        WriteSpool spool = open();
+        assertTrue(spool.append(batch(1)));
+        assertTrue(spool.append(batch(2)));
+        assertEquals(batch(1), spool.peek());
+        spool.commit();
+        spool.close();
+
+        WriteSpool reopened = open();
+        assertEquals(1L, (long) reopened.metrics().getLong("depth"));
+        assertEquals(batch(2), reopened.peek());
+        reopened.commit();
+        assertNull(reopened.peek());
+        assertTrue(reopened.isEmpty());
+    }
+
+    @Test
+    public void testCorruptSegmentOnRestart() throws IOException {
+        WriteSpool spool = open();
+        spool.append(batch(1));
+        spool.append(batch(2));
+        spool.close();
+        corruptFirstRecord(files(".seg").get(0));
+
+        WriteSpool reopened = open();
+        assertEquals(1, files(".corrupt").size());
+        assertEquals(batch(2), reopened.peek());
+        reopened.commit();
+        assertNull(reopened.peek());
+        // 缓存仍然可以继续使用
+        assertTrue(reopened.append(batch(3)));
+        assertEquals(batch(3), reopened.peek());
+    }
+
+    @Test
+    public void testTruncatedSegmentOnRestart() throws IOException {
+        Files.write(folder.getRoot().toPath().resolve("00000000000000000001.seg"), new byte[3]);
+        WriteSpool spool = open();
+        assertEquals(1, files(".corrupt").size());
+        assertTrue(spool.append(batch(1)));
+        assertEquals(batch(1), spool.peek());
+        assertEquals(2, files(".seg").size() + files(".corrupt").size());
+    }
+
+    @Test
+    public void testCorruptSegmentWhileReplaying() throws IOException {
+        WriteSpool spool = open();
+        spool.append(batch(1));
+        spool.append(batch(2));
+        corruptFirstRecord(files(".seg").get(0));
+
+        assertEquals(batch(2), spool.peek());
+        spool.commit();
+        assertNull(spool.peek());
+        assertFalse(files(".corrupt").isEmpty());
+        assertEquals(1L, (long) spool.metrics().getLong("discarded"));
+        assertEquals(0L, (long) spool.metrics().getLong("depth"));
+    }
+
+    @Test
+    public void testCorruptRecordIsNotReplayed() throws IOException {
+        WriteSpool spool = open();
+        spool.append(batch(1));
+        spool.append(batch(2));
+        garbleFirstRecord(files(".seg").get(0));
+
+        assertEquals(batch(2), spool.peek());
+        spool.commit();
+        assertNull(spool.peek());
+        assertEquals(1L, (long) spool.metrics().getLong("discarded"));
+        // 跳过的记录只计入discarded
+        assertEquals(1L, spool.replayed());
+        assertEquals(0L, (long) spool.metrics().getLong("depth"));
+    }
+
+}
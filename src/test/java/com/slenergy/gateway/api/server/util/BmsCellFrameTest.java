@@ -0,0 +1,154 @@
+package com.slenergy.gateway.api.server.util;
+
+import com.slenergy.gateway.api.server.DeviceMessage;
+import com.slenergy.gateway.api.server.FrameHeaders;
+import com.slenergy.gateway.api.server.device.EmsBox;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.HexFormat;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.regex.Pattern;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * class BmsCellFrameTest description
+ * 和原来用正则表达式拼接的joinBmsMonomerData对比编码结果
+ * 有意的区别: 寄存器按地址排序, 原来按查询结果中字段的顺序; 寄存器的值不是4位十六进制或者为空时现在返回数据不完整
+ *
+ * @author Eric Li
+ * @version 1.0
+ *
+ * @since 2026-10-18
+ * @since 1.0
+ */
+public class BmsCellFrameTest {
+
+    private final static String COLLECTOR = "EMS123467";
+    private final static String SERIAL_NUMBER = "TEST-CELL-01";
+    private final static LocalDateTime TIME = LocalDateTime.of(2026, 10, 18, 9, 5, 30);
+
+    @Before
+    public void setUp() {
+        EmsBox emsBox = new EmsBox();
+        emsBox.setSerialNumber(COLLECTOR);
+        DeviceMessage.getInstance().setEmsBox(emsBox);
+    }
+
+    private static Map<String, Object> row(String tag, String... registers) {
+        Map<String, Object> row = new LinkedHashMap<>();
+        row.put("_time", "2026-10-18T01:05:30Z");
+        row.put("tag", tag);
+        row.put("deviceSN", SERIAL_NUMBER);
+        for (int i = 0; i < registers.length; i += 2)
+            row.put(registers[i], registers[i + 1]);
+        return row;
+    }
+
+    /**
+     * tag的顺序和写入顺序不同, 包含无关的tag以及同一个tag的第二行
+     */
+    private static List<Map<String, Object>> rows() {
+        List<Map<String, Object>> rows = new ArrayList<>();
+        rows.add(row("SingleTemperature", "1100", "0019", "1101", "001a"));
+        rows.add(row("SingleCellVoltage", "1000", "0cf0", "1001", "0cf1", "1002", "0ce8"));
+        rows.add(row("Other", "2000", "ffff"));
+        rows.add(row("MonomerEquilibriumState", "1300", "0001"));
+        rows.add(row("RTControlTemperature", "1200", "0020"));
+        rows.add(row("SingleCellVoltage", "1000", "0000"));
+        return rows;
+    }
+
+    private static String encode(List<Map<String, Object>> rows) {
+        FrameHeaders.Header header = FrameHeaders.getInstance().header("batteryCell", SERIAL_NUMBER);
+        BmsCellFrame frame = new BmsCellFrame();
+        return frame.encode(header, TIME, rows) ? frame.toHex() : null;
+    }
+
+    @Test
+    public void testMatchesBaseline() {
+        assertEquals(baseline(rows()), encode(rows()));
+    }
+
+    @Test
+    public void testMissingTag() {
+        List<Map<String, Object>> rows = rows();
+        rows.removeIf(row -> "RTControlTemperature".equals(row.get("tag")));
+        assertEquals(baseline(rows), encode(rows));
+    }
+
+    @Test
+    public void testSortsByAddress() {
+        // 原来按字段顺序写入, 现在按地址排序, 和字段已经排好序时原来的结果相同
+        List<Map<String, Object>> shuffled = rows();
+        shuffled.set(1, row("SingleCellVoltage", "1002", "0ce8", "1000", "0cf0", "1001", "0cf1"));
+        assertNotEquals(baseline(shuffled), encode(shuffled));
+        assertEquals(baseline(rows()), encode(shuffled));
+    }
+
+    @Test
+    public void testInvalidValueIsIncomplete() {
+        // 原来的实现会把这些值原样拼接到数据帧中
+        List<Map<String, Object>> rows = rows();
+        rows.set(0, row("SingleTemperature", "1100", "19", "1101", "001a"));
+        assertTrue(baseline(rows).contains("110019"));
+        assertNull(encode(rows));
+
+        rows.set(0, row("SingleTemperature", "1100", null, "1101", "001a"));
+        assertTrue(baseline(rows).contains("1100null"));
+        assertNull(encode(rows));
+
+        // 不是寄存器的字段不影响结果
+        rows.set(0, row("SingleTemperature", "1100", "0019", "1101", "001a", "_value", "x"));
+        assertNotNull(encode(rows));
+    }
+
+    /**
+     * 原来的joinBmsMonomerData, 只把当前时间换成固定时间
+     */
+    private static String baseline(List<Map<String, Object>> data) {
+        HexFormat hexFormat = HexFormat.of();
+        List<String> order = List.of("SingleCellVoltage", "SingleTemperature", "RTControlTemperature", "MonomerEquilibriumState");
+        Pattern numberPattern = Pattern.compile("^[0-9a-fA-F]+$");
+        StringBuilder bmsMonomerInfo = new StringBuilder();
+        for (Map<String, Object> datum : data) {
+            if ("SingleCellVoltage".equals(datum.get("tag"))) {
+                for (Map.Entry<String, Object> entry : datum.entrySet()) {
+                    if (numberPattern.matcher(entry.getKey()).matches())
+                        bmsMonomerInfo.append(entry.getKey());
+                }
+                break;
+            }
+        }
+
+        bmsMonomerInfo.append("00");
+        for (String key : order) {
+            for (Map<String, Object> datum : data) {
+                if (key.equals(datum.get("tag"))) {
+                    for (Map.Entry<String, Object> entry : datum.entrySet()) {
+                        if (numberPattern.matcher(entry.getKey()).matches())
+                            bmsMonomerInfo.append(entry.getKey()).append(entry.getValue());
+                    }
+                    break;
+                }
+            }
+        }
+
+        return SegmentEncoderTest.padLeft(hexFormat.formatHex(COLLECTOR.getBytes()), 30)
+                + SegmentEncoderTest.padLeft(hexFormat.formatHex(SERIAL_NUMBER.getBytes()), 30)
+                + SegmentEncoderTest.timestamp(TIME)
+                + "f901"
+                + "00"
+                + bmsMonomerInfo;
+    }
+
+}
@@ -0,0 +1,75 @@
+package com.slenergy.gateway.api.server.util;
+
+import com.slenergy.gateway.api.server.DeviceMessage;
+import com.slenergy.gateway.api.server.FrameHeaders;
+import com.slenergy.gateway.api.server.device.EmsBox;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.nio.file.Files;
+import java.time.LocalDateTime;
+import java.util.HashMap;
+import java.util.Map;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * class RegisterLayoutTest description
+ *
+ * @author Eric Li
+ * @version 1.0
+ *
+ * @since 2026-10-18
+ * @since 1.0
+ */
+public class RegisterLayoutTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Before
+    public void setUp() throws Exception {
+        EmsBox emsBox = new EmsBox();
+        emsBox.setSerialNumber("EMS123467");
+        DeviceMessage.getInstance().setEmsBox(emsBox);
+
+        File file = folder.newFile("registers.json");
+        Files.writeString(file.toPath(), "{\"layoutLower\": [\"109e-10a1\", \"2000\"], \"layoutUpper\": [\"109E-10A1\"]}");
+        RegisterLayout.load(file.getPath());
+    }
+
+    private static Map<String, Object> data(String... keys) {
+        Map<String, Object> data = new HashMap<>();
+        for (String key : keys)
+            data.put(key, "0001");
+        return data;
+    }
+
+    private static boolean encode(String deviceType, Map<String, Object> data) {
+        FrameHeaders.Header header = FrameHeaders.getInstance().header("pcs", "TEST-PCS-01");
+        return new SegmentEncoder().begin(header, LocalDateTime.now()).segments(data, RegisterLayout.get(deviceType));
+    }
+
+    @Test
+    public void testRangeKeepsCase() {
+        RegisterLayout lower = RegisterLayout.get("layoutLower");
+        assertEquals(5, lower.size());
+        assertEquals(2, lower.segmentCount());
+        assertEquals("109f", lower.key(1));
+        assertEquals("10a0", lower.key(2));
+        assertEquals("10A0", RegisterLayout.get("layoutUpper").key(2));
+        assertTrue(lower.fixed());
+    }
+
+    @Test
+    public void testDataCaseDiffersFromLayout() {
+        assertTrue(encode("layoutLower", data("109E", "109F", "10A0", "10A1", "2000")));
+        assertTrue(encode("layoutLower", data("109e", "109f", "10a0", "10a1", "2000")));
+        assertTrue(encode("layoutUpper", data("109e", "109f", "10a0", "10a1")));
+    }
+
+}
@@ -0,0 +1,180 @@
+package com.slenergy.gateway.api.server.util;
+
+import com.slenergy.gateway.api.server.DeviceMessage;
+import com.slenergy.gateway.api.server.FrameHeaders;
+import com.slenergy.gateway.api.server.device.EmsBox;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.HexFormat;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertNull;
+
+/**
+ * class SegmentEncoderTest description
+ * 和原来按字符串拼接的convertDataIntoSegment对比编码结果
+ * 有意的区别: 寄存器的值不是4位十六进制或者为空时现在返回数据不完整
+ *
+ * @author Eric Li
+ * @version 1.0
+ *
+ * @since 2026-10-18
+ * @since 1.0
+ */
+public class SegmentEncoderTest {
+
+    private final static String COLLECTOR = "EMS123467";
+    private final static LocalDateTime TIME = LocalDateTime.of(2026, 10, 18, 9, 5, 30);
+
+    @Before
+    public void setUp() {
+        EmsBox emsBox = new EmsBox();
+        emsBox.setSerialNumber(COLLECTOR);
+        DeviceMessage.getInstance().setEmsBox(emsBox);
+    }
+
+    /**
+     * 三个区段, 其中一个只有一个寄存器, 插入顺序和地址顺序不同
+     */
+    private static Map<String, Object> registers() {
+        Map<String, Object> data = new LinkedHashMap<>();
+        data.put("0102", "00ff");
+        data.put("0100", "1234");
+        data.put("0101", "abcd");
+        data.put("0200", "0001");
+        data.put("0300", "7fff");
+        data.put("0301", "8000");
+        return data;
+    }
+
+    private static String encode(Map<String, Object> data, String deviceType, String serialNumber) {
+        FrameHeaders.Header header = FrameHeaders.getInstance().header(deviceType, serialNumber);
+        RegisterLayout layout = RegisterLayout.learn(deviceType, data.keySet());
+        SegmentEncoder encoder = new SegmentEncoder();
+        return encoder.begin(header, TIME).segments(data, layout) ? encoder.toHex() : null;
+    }
+
+    @Test
+    public void testMatchesBaseline() {
+        Map<String, Object> data = registers();
+        assertEquals(baseline(data, "TEST-BMS-01", "bms"), encode(data, "bms", "TEST-BMS-01"));
+    }
+
+    @Test
+    public void testGeneratedSerialNumber() {
+        Map<String, Object> data = registers();
+        assertEquals(baseline(data, "ignored", "IOmodule"), encode(data, "IOmodule", "ignored"));
+    }
+
+    @Test
+    public void testSegmentCountIsUppercase() {
+        // 11个不连续的寄存器, 区段个数为0B
+        Map<String, Object> data = new LinkedHashMap<>();
+        for (int i = 0; i < 11; i++)
+            data.put(String.format("%04x", i * 2), "0001");
+
+        String actual = encode(data, "bms", "TEST-BMS-02");
+        int count = FrameHeaders.SERIAL_NUMBER_LENGTH * 4 + 12 + 4;
+        assertEquals("0B", actual.substring(count, count + 2));
+        assertEquals(baseline(data, "TEST-BMS-02", "bms"), actual);
+    }
+
+    @Test
+    public void testRegisterCaseIsKept() {
+        // 大写的地址和值原样输出, 同一个值中可以大小写混合
+        Map<String, Object> data = new LinkedHashMap<>();
+        data.put("10A0", "ABCD");
+        data.put("10A1", "00ff");
+        data.put("10A2", "Ef01");
+        data.put("20b0", "FFFF");
+        assertEquals(baseline(data, "TEST-BMS-04", "bms"), encode(data, "bms", "TEST-BMS-04"));
+    }
+
+    @Test
+    public void testInvalidValueIsIncomplete() {
+        // 长度不是4时原来的实现也认为数据缺失
+        Map<String, Object> data = registers();
+        data.put("0200", "1");
+        assertEquals("Error", baseline(data, "TEST-BMS-03", "bms"));
+        assertNull(encode(data, "bms", "TEST-BMS-03"));
+
+        // 原来的实现会把null和非十六进制的值原样拼接到数据帧中
+        data.put("0200", null);
+        assertNotEquals("Error", baseline(data, "TEST-BMS-03", "bms"));
+        assertNull(encode(data, "bms", "TEST-BMS-03"));
+
+        data.put("0200", "12g4");
+        assertNotEquals("Error", baseline(data, "TEST-BMS-03", "bms"));
+        assertNull(encode(data, "bms", "TEST-BMS-03"));
+    }
+
+    /**
+     * 原来的convertDataIntoSegment, 只把当前时间换成固定时间
+     */
+    static String baseline(Map<String, Object> data, String deviceSN, String deviceType) {
+        HexFormat hexFormat = HexFormat.of();
+        switch (deviceType) {
+            case "IOmodule" -> deviceSN = "IO" + COLLECTOR;
+            case "beidou" -> deviceSN = "BD" + COLLECTOR;
+            case "AirConditioner" -> deviceSN = "Air" + COLLECTOR;
+        }
+
+        List<String> segments = new ArrayList<>();
+        int segmentCount = 0;
+        TreeMap<String, Object> sortedData = new TreeMap<>(data);
+        String startAddress = null;
+        StringBuilder segmentData = new StringBuilder();
+        for (Map.Entry<String, Object> entry : sortedData.entrySet()) {
+            String key = entry.getKey();
+            if (startAddress == null)
+                startAddress = key;
+            segmentData.append(entry.getValue());
+            String higherKey = sortedData.higherKey(key);
+            long currentKey = Long.parseLong(key, 16);
+            if (higherKey == null || Long.parseLong(higherKey, 16) != currentKey + 1) {
+                segments.add(startAddress + key + segmentData);
+                segmentCount++;
+                startAddress = null;
+                segmentData.setLength(0);
+            }
+        }
+
+        for (String segment : segments) {
+            long diff = Long.parseLong(segment.substring(4, 8), 16) - Long.parseLong(segment.substring(0, 4), 16) + 1;
+            if (diff != (segment.length() - 8) / 4)
+                return "Error";
+        }
+
+        StringBuilder output = new StringBuilder();
+        output.append(padLeft(hexFormat.formatHex(COLLECTOR.getBytes()), 30));
+        output.append(padLeft(hexFormat.formatHex(deviceSN.getBytes()), 30));
+        output.append(timestamp(TIME));
+        switch (deviceType) {
+            case "bms", "bms_monomer" -> output.append("fc01");
+            case "batteryCell" -> output.append("f901");
+            case "IOmodule" -> output.append("f601");
+        }
+        output.append(String.format("%02X", segmentCount));
+        for (String segment : segments)
+            output.append(segment);
+        return output.toString();
+    }
+
+    static String padLeft(String str, int length) {
+        return String.format("%1$" + length * 2 + "s", str).replace(' ', '0');
+    }
+
+    static String timestamp(LocalDateTime time) {
+        return String.format("%02x%02x%02x%02x%02x%02x", time.getYear() - 2000, time.getMonthValue(), time.getDayOfMonth(),
+                time.getHour(), time.getMinute(), time.getSecond());
+    }
+
+}